@@ -34,6 +34,13 @@ public class Config {
         return config.getProperty("recaptcha.secret");
     }
 
+    /**
+     * Either "local" (the default) or "redis" when running more than one node.
+     */
+    public static String getRateLimitBackend() {
+        return config.getProperty("ratelimit.backend", "local");
+    }
+
     public static void main(String[] args) {
         System.out.println("MySQL Password: " + getMysqlPassword());
         System.out.println("reCAPTCHA Token: " + getRecaptchaSecret());
@@ -5,7 +5,7 @@ import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.javalin.Javalin;
-import io.javalin.json.JsonMapper;
+import je.glitch.data.api.cache.ApiKeyResolver;
 import je.glitch.data.api.cache.RedisCache;
 import je.glitch.data.api.controllers.AuthController;
 import je.glitch.data.api.controllers.MeController;
@@ -19,21 +19,22 @@ import je.glitch.data.api.models.User;
 import je.glitch.data.api.services.*;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
+import je.glitch.data.api.utils.ratelimit.LocalRateLimitBackend;
+import je.glitch.data.api.utils.ratelimit.RateLimitBackend;
+import je.glitch.data.api.utils.ratelimit.RedisRateLimitBackend;
+import je.glitch.data.api.utils.upstream.UpstreamClient;
 import lombok.Getter;
 import org.eclipse.jetty.server.session.*;
-import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.security.GeneralSecurityException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.Duration;
 
 public class Server {
     public static Server INSTANCE;
 
     public static final Gson GSON = new GsonBuilder()
-            .setPrettyPrinting()
             .disableHtmlEscaping()
             .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
             .serializeNulls()
@@ -51,6 +52,10 @@ public class Server {
             })
             .create();
 
+    public static final Gson PRETTY_GSON = GSON.newBuilder()
+            .setPrettyPrinting()
+            .create();
+
     @Getter
     private final MySQLConnection connection;
 
@@ -75,17 +80,21 @@ public class Server {
 
     private final RedisCache cache;
 
-    private final ExecutorService trackingThreadPool = Executors.newFixedThreadPool(4);
+    private final RequestLogService requestLogService;
+
+    private final UpstreamClient upstream;
 
     public Server() {
         INSTANCE = this;
 
         this.connection = new MySQLConnection();
         this.cache = new RedisCache();
+        this.requestLogService = new RequestLogService(connection);
+        this.upstream = new UpstreamClient();
 
         this.carparkController = new CarparkController(new CarparkService(connection, cache));
-        this.vehicleController = new VehicleController(new VehicleService(connection));
-        this.busController = new BusController(new BusService(connection));
+        this.vehicleController = new VehicleController(new VehicleService(connection, upstream, cache));
+        this.busController = new BusController(new BusService(connection, upstream), createRateLimitBackend());
         this.simpleEndpointController = new SimpleEndpointController(connection, cache);
         this.errorController = new ErrorController();
         this.foiController = new FoiController(new FoiService(connection));
@@ -105,7 +114,18 @@ public class Server {
         this.meController = new MeController(new ApiKeyService(connection), new UserService(connection));
         this.adminUsersController = new AdminUsersController(connection);
         this.adminTokensController = new AdminTokensController(connection);
-        this.adminStatsController = new AdminStatsController(connection);
+        this.adminStatsController = new AdminStatsController(connection, requestLogService, upstream);
+    }
+
+    /**
+     * Redis backed limits are shared between nodes, local limits are per node.
+     */
+    private RateLimitBackend createRateLimitBackend() {
+        RateLimitBackend local = new LocalRateLimitBackend(Duration.ofHours(1));
+        if ("redis".equalsIgnoreCase(Config.getRateLimitBackend())) {
+            return new RedisRateLimitBackend(cache.getPool(), local);
+        }
+        return local;
     }
 
     public static void main(String[] args) {
@@ -113,20 +133,8 @@ public class Server {
     }
 
     private void startup() {
-        JsonMapper gsonMapper = new JsonMapper() {
-            @Override
-            public String toJsonString(@NotNull Object obj, @NotNull Type type) {
-                return GSON.toJson(obj, type);
-            }
-
-            @Override
-            public <T> T fromJsonString(@NotNull String json, @NotNull Type targetType) {
-                return GSON.fromJson(json, targetType);
-            }
-        };
-
         Javalin app = Javalin.create(config -> {
-            config.jsonMapper(gsonMapper);
+            config.jsonMapper(new StreamingJsonMapper());
             config.router.ignoreTrailingSlashes = true;
             config.showJavalinBanner = false;
             config.bundledPlugins.enableCors(cors -> {
@@ -149,9 +157,18 @@ public class Server {
             config.jetty.modifyServletContextHandler(handler -> handler.setSessionHandler(sqlSessionHandler()));
         }).start(8080);
 
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            app.stop();
+            requestLogService.shutdown();
+        }));
+
         app.exception(Exception.class, errorController::handleException);
         app.error(404, errorController::handleNotFound);
 
+        // Responses are compact unless ?pretty=true is passed
+        app.before(StreamingJsonMapper::beginRequest);
+        app.after(StreamingJsonMapper::endRequest);
+
         // Admin handling
         app.before(ctx -> {
             String path = ctx.path();
@@ -198,24 +215,9 @@ public class Server {
             int status = ctx.statusCode();
             String ip = ctx.ip();
             String userAgent = ctx.userAgent();
-            String tokenHeader = ctx.header("x-api-key");
-            String tokenQuery = ctx.queryParam("auth");
+            String token = ApiKeyResolver.getToken(ctx);
 
-            trackingThreadPool.submit(() -> {
-                String apiTokenId = null;
-                String token = null;
-
-                if (tokenHeader != null && !tokenHeader.isEmpty()) {
-                    token = tokenHeader;
-                } else if (tokenQuery != null && !tokenQuery.isEmpty()) {
-                    token = tokenQuery;
-                }
-                if (token != null) {
-                    String foundId = connection.getApiKeyTable().getIdFromKey(token);
-                    apiTokenId = (foundId != null && !foundId.isEmpty()) ? foundId : null;
-                }
-                connection.getLogTable().trackRequest(method, path, status, ip, userAgent, apiTokenId);
-            });
+            requestLogService.track(method, path, status, ip, userAgent, token);
         });
 
         app.head("/health", ctx -> ctx.status(200));
@@ -223,17 +225,23 @@ public class Server {
 
         app.get("/v1/carparks", carparkController::handleGetCarparks);
         app.get("/v1/carparks/spaces", carparkController::handleGetLiveSpaces);
+        app.sse("/v1/carparks/spaces/stream", carparkController::handleLiveSpacesStream);
         app.get("/v1/carparks/spaces/dates", carparkController::handleGetLiveSpacesDates);
         app.get("/v1/carparks/spaces/dates/{date}", carparkController::handleGetLiveSpacesForDate);
         app.get("/v1/carparks/spaces/all-temp-do-not-use", carparkController::handleGetAllSpacesData);
         app.get("/v1/carparks/{idOrCode}", carparkController::handleGetCarpark);
+        app.get("/v1/carparks/{code}/history", carparkController::handleGetHistory);
 
         app.get("/v1/vehicles", vehicleController::handleGetVehicles);
         app.get("/v1/vehicles/stats", vehicleController::handleGetStats);
         app.get("/v1/vehicles/colors", vehicleController::handleGetColors);
         app.get("/v1/vehicles/makes", vehicleController::handleGetMakes);
+        app.get("/v1/vehicles/makes/suggest", vehicleController::handleSuggestMakes);
         app.get("/v1/vehicles/models", vehicleController::handleGetModels);
+        app.get("/v1/vehicles/models/suggest", vehicleController::handleSuggestModels);
         app.get("/v1/vehicles/lookup/{plate}", vehicleController::handleGetPlate);
+        app.post("/v1/vehicles/lookup/{plate}/jobs", vehicleController::handleCreatePlateJob);
+        app.get("/v1/vehicles/lookup/jobs/{id}", vehicleController::handleGetPlateJob);
 
         app.get("/v1/eatsafe", simpleEndpointController::handleGetEatsafe);
         app.get("/v1/toilets", simpleEndpointController::handleGetToilets);
@@ -278,6 +286,8 @@ public class Server {
         app.get("/admin/stats", adminStatsController::handleGetStats);
         app.get("/admin/stats/daily-requests", adminStatsController::handleGetDailyRequestsChart);
         app.get("/admin/stats/top-endpoints", adminStatsController::handleGetTopEndpoints);
+        app.get("/admin/stats/request-log", adminStatsController::handleGetRequestLogMetrics);
+        app.get("/admin/stats/upstream", adminStatsController::handleGetUpstreamMetrics);
 
         app.post("/auth/login", authController::handleLogin);
         app.post("/auth/register", authController::handleRegister);
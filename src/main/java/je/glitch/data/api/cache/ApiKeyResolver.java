@@ -0,0 +1,119 @@
+package je.glitch.data.api.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.javalin.http.Context;
+import je.glitch.data.api.database.tables.ApiKeyTable;
+import je.glitch.data.api.database.tables.UserTable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves api keys to token ids without going to the database on every request.
+ *
+ * All tokens are held in memory and kept in sync by {@link ApiKeyTable} when tokens
+ * are created or deleted, and by {@link UserTable} when a user and their tokens are
+ * deleted. Keys that are not found are remembered for a short time, so
+ * repeated requests with a bad key do not hit the database either. A periodic reload
+ * picks up changes made by other nodes.
+ */
+@Slf4j
+public class ApiKeyResolver {
+    private static final String CONTEXT_ATTRIBUTE = "apiTokenId";
+    private static final String NO_TOKEN = "";
+    private static final long REFRESH_INTERVAL_MINUTES = 5;
+
+    private final ApiKeyTable table;
+    private final Map<String, String> idsByToken = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> unknownTokens = Caffeine.newBuilder()
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .maximumSize(10_000)
+            .build();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "api-key-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ApiKeyResolver(ApiKeyTable table) {
+        this.table = table;
+        this.scheduler.scheduleWithFixedDelay(this::reload, 0, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Returns the token id for an api key, or null if the key does not exist.
+     */
+    public String resolve(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        String id = idsByToken.get(token);
+        if (id != null || unknownTokens.getIfPresent(token) != null) {
+            return id;
+        }
+
+        id = table.getIdFromKey(token);
+        if (id != null && !id.isEmpty()) {
+            idsByToken.put(token, id);
+            return id;
+        }
+        unknownTokens.put(token, Boolean.TRUE);
+        return null;
+    }
+
+    /**
+     * Returns the token id for the api key sent with a request, or null if there is no
+     * valid key. The result is stored on the context so later checks are free.
+     */
+    public String resolve(Context ctx) {
+        String cached = ctx.attribute(CONTEXT_ATTRIBUTE);
+        if (cached != null) {
+            return cached.equals(NO_TOKEN) ? null : cached;
+        }
+
+        String id = resolve(getToken(ctx));
+        ctx.attribute(CONTEXT_ATTRIBUTE, id != null ? id : NO_TOKEN);
+        return id;
+    }
+
+    public void onTokenCreated(String token, String id) {
+        idsByToken.put(token, id);
+        unknownTokens.invalidate(token);
+    }
+
+    public void onTokenDeleted(String id) {
+        idsByToken.values().removeIf(id::equals);
+    }
+
+    public static String getToken(Context ctx) {
+        String tokenHeader = ctx.header("x-api-key");
+        String tokenQuery = ctx.queryParam("auth");
+
+        if (tokenHeader != null && !tokenHeader.isEmpty()) {
+            return tokenHeader;
+        } else if (tokenQuery != null && !tokenQuery.isEmpty()) {
+            return tokenQuery;
+        }
+        return null;
+    }
+
+    private void reload() {
+        try {
+            Map<String, String> tokens = table.getTokenIds();
+            if (tokens == null) {
+                return;
+            }
+
+            idsByToken.keySet().retainAll(tokens.keySet());
+            idsByToken.putAll(tokens);
+        } catch (Exception ex) {
+            log.error("Failed to reload api keys", ex);
+        }
+    }
+}
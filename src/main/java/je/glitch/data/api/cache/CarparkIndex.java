@@ -0,0 +1,102 @@
+package je.glitch.data.api.cache;
+
+import je.glitch.data.api.database.tables.CarparkTable;
+import je.glitch.data.api.models.Carpark;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory copy of the carparks table, keyed by id and by live tracking code.
+ * Carpark metadata rarely changes, so it is reloaded on a schedule instead of
+ * being joined for every request.
+ *
+ * Lookups ignore case, like the MySQL collation the queries they replace ran under.
+ */
+@Slf4j
+public class CarparkIndex {
+    private static final long REFRESH_INTERVAL_MINUTES = 10;
+
+    private final CarparkTable table;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "carpark-index-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    public CarparkIndex(CarparkTable table) {
+        this.table = table;
+        this.scheduler.scheduleWithFixedDelay(this::reload, REFRESH_INTERVAL_MINUTES, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public List<Carpark> getAll() {
+        return snapshot().all;
+    }
+
+    public Carpark getById(String id) {
+        return id != null ? snapshot().byId.get(key(id)) : null;
+    }
+
+    public Carpark getByLiveTrackingCode(String code) {
+        return code != null ? snapshot().byCode.get(key(code)) : null;
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private synchronized void reload() {
+        try {
+            List<Carpark> carparks = table.getCarparks();
+
+            // getCarparks swallows errors and returns an empty list, so keep serving the old copy
+            if (carparks.isEmpty() && snapshot != null && !snapshot.all.isEmpty()) {
+                log.warn("Carpark index reload returned no carparks, keeping previous snapshot");
+                return;
+            }
+
+            Map<String, Carpark> byId = new HashMap<>();
+            Map<String, Carpark> byCode = new HashMap<>();
+
+            for (Carpark carpark : carparks) {
+                byId.put(key(carpark.getId()), carpark);
+
+                if (carpark.getLiveTrackingCode() != null) {
+                    byCode.put(key(carpark.getLiveTrackingCode()), carpark);
+                }
+            }
+            snapshot = new Snapshot(List.copyOf(carparks), byId, byCode);
+        } catch (Exception ex) {
+            log.error("Failed to reload carpark index", ex);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Snapshot {
+        private final List<Carpark> all;
+        private final Map<String, Carpark> byId;
+        private final Map<String, Carpark> byCode;
+    }
+}
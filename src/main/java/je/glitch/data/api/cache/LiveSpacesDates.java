@@ -0,0 +1,85 @@
+package je.glitch.data.api.cache;
+
+import je.glitch.data.api.database.tables.CarparkTable;
+import je.glitch.data.api.database.tables.DateRange;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set of days that have live space readings, newest first.
+ *
+ * The full set is loaded once, and after that each refresh only asks for days
+ * from the newest known day onwards, which is a short range scan on the createdAt
+ * index. Readings are never deleted, so days only ever get added.
+ */
+@Slf4j
+public class LiveSpacesDates {
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+
+    private final CarparkTable table;
+    private final NavigableSet<LocalDate> dates = new ConcurrentSkipListSet<>(Comparator.reverseOrder());
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "live-spaces-dates-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean loaded;
+    private volatile List<String> formatted = List.of();
+
+    public LiveSpacesDates(CarparkTable table) {
+        this.table = table;
+        this.scheduler.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the days formatted as YYYY-MM-DD, newest first
+     */
+    public List<String> getDates() {
+        ensureLoaded();
+        return formatted;
+    }
+
+    /**
+     * Whether a day is known to have no readings. Days after the newest known day
+     * may have had readings since the last refresh, so they are never ruled out.
+     */
+    public boolean isKnownEmpty(LocalDate date) {
+        ensureLoaded();
+        return !dates.isEmpty() && date.isBefore(dates.first()) && !dates.contains(date);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            refresh();
+        }
+    }
+
+    private synchronized void refresh() {
+        try {
+            DateRange range = dates.isEmpty()
+                    ? new DateRange(null, null)
+                    : DateRange.since(dates.first());
+
+            List<LocalDate> found = table.getLiveSpacesDates(range);
+            if (found == null) {
+                return;
+            }
+
+            if (dates.addAll(found) || !loaded) {
+                formatted = dates.stream().map(LocalDate::toString).toList();
+            }
+            loaded = true;
+        } catch (Exception ex) {
+            log.error("Failed to refresh live spaces dates", ex);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package je.glitch.data.api.cache;
+
+import je.glitch.data.api.database.tables.CarparkTable;
+import je.glitch.data.api.models.LiveParkingSpace;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Columnar copy of liveParkingSpaces, used to answer history queries without going
+ * back to MySQL.
+ *
+ * Readings are split into one series per carpark code, so the code and name are
+ * stored once rather than per row. Each series holds parallel columns: row ids and
+ * times as {@code int[]} (times in seconds relative to {@link #EPOCH_BASE}), spaces
+ * as {@code short[]}, a dictionary encoded status as {@code byte[]}, and open/full
+ * flags as bitsets. A reading takes around 11 bytes instead of a few hundred.
+ *
+ * The store is loaded in the background on startup and then tails the table by id.
+ * There is a single writer. Readers may run concurrently: columns are filled in
+ * before the volatile size is bumped, and they are only ever grown by copying, so a
+ * reader that reads the size first always sees valid data up to it.
+ */
+@Slf4j
+public class OccupancyHistoryStore {
+    public static final long EPOCH_BASE = 1_577_836_800L; // 2020-01-01T00:00:00Z
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final CarparkTable table;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final Map<String, Byte> statusCodes = new HashMap<>();
+    private volatile String[] statusNames = new String[0];
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "occupancy-history-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long watermark;
+    private volatile boolean loaded;
+
+    public OccupancyHistoryStore(CarparkTable table) {
+        this.table = table;
+        this.scheduler.scheduleWithFixedDelay(this::refresh, 0, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Whether the initial load has finished. Until then callers should use the database.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean hasCarpark(String code) {
+        return series.containsKey(code);
+    }
+
+    /**
+     * Returns every reading taken on a day, newest first.
+     */
+    public List<LiveParkingSpace> getDay(LocalDate date) {
+        ZoneId zone = ZoneId.systemDefault();
+        int from = toSeconds(date.atStartOfDay(zone).toEpochSecond());
+        int to = toSeconds(date.plusDays(1).atStartOfDay(zone).toEpochSecond());
+
+        List<LiveParkingSpace> spaces = new ArrayList<>();
+        for (Series s : series.values()) {
+            s.forEach(from, to, (index, time, count, open, full) -> spaces.add(new LiveParkingSpace(
+                    String.valueOf(s.ids[index]),
+                    new Timestamp(toEpochMillis(time)),
+                    s.name,
+                    s.code,
+                    count,
+                    statusName(s.statuses[index]),
+                    open
+            )));
+        }
+
+        spaces.sort(Comparator.comparing(LiveParkingSpace::getCreatedAt).reversed());
+        return spaces;
+    }
+
+    /**
+     * Visits the readings for a carpark with a time in [from, to), oldest first.
+     *
+     * @param from inclusive lower bound, in epoch seconds
+     * @param to exclusive upper bound, in epoch seconds
+     */
+    public void forEach(String code, long from, long to, ReadingVisitor visitor) {
+        Series s = series.get(code);
+        if (s != null) {
+            s.forEach(toSeconds(from), toSeconds(to), visitor);
+        }
+    }
+
+    public static long toEpochSeconds(int time) {
+        return EPOCH_BASE + time;
+    }
+
+    public static long toEpochMillis(int time) {
+        return toEpochSeconds(time) * 1000;
+    }
+
+    private static int toSeconds(long epochSeconds) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, epochSeconds - EPOCH_BASE));
+    }
+
+    private String statusName(byte code) {
+        return statusNames[code];
+    }
+
+    // Only called by the writer
+    private byte statusCode(String status) {
+        return statusCodes.computeIfAbsent(status, s -> {
+            String[] names = Arrays.copyOf(statusNames, statusNames.length + 1);
+            names[names.length - 1] = s;
+            statusNames = names;
+            return (byte) (names.length - 1);
+        });
+    }
+
+    private synchronized void refresh() {
+        try {
+            int[] appended = new int[2];
+
+            table.streamSpacesAfter(watermark, (id, createdAt, name, code, spaces, status, open) -> {
+                Series s = series.computeIfAbsent(code, c -> new Series(c, name));
+                int time = toSeconds(createdAt.getTime() / 1000);
+
+                if (s.append(id, time, spaces, statusCode(status), open, spaces == 0 || "FULL".equals(status))) {
+                    appended[0]++;
+                } else {
+                    appended[1]++;
+                }
+                watermark = Math.max(watermark, id);
+            });
+
+            if (appended[1] > 0) {
+                log.warn("Skipped " + appended[1] + " out of order parking readings");
+            }
+            if (!loaded) {
+                log.info("Loaded " + appended[0] + " parking readings into the occupancy history store");
+                loaded = true;
+            }
+        } catch (Exception ex) {
+            log.error("Failed to refresh occupancy history", ex);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ReadingVisitor {
+        void visit(int index, int time, int spaces, boolean open, boolean full);
+    }
+
+    private static class Series {
+        private final String code;
+        private final String name;
+
+        private volatile int size;
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int[] times = new int[INITIAL_CAPACITY];
+        private short[] spaces = new short[INITIAL_CAPACITY];
+        private byte[] statuses = new byte[INITIAL_CAPACITY];
+        private long[] openBits = new long[INITIAL_CAPACITY / 64];
+        private long[] fullBits = new long[INITIAL_CAPACITY / 64];
+
+        Series(String code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        /**
+         * Appends a reading. Binary search relies on times being in order, so readings
+         * older than the last one are rejected.
+         */
+        boolean append(int id, int time, int count, byte status, boolean open, boolean full) {
+            int index = size;
+            if (index > 0 && time < times[index - 1]) {
+                return false;
+            }
+
+            if (index == times.length) {
+                int capacity = times.length + (times.length >> 1);
+                capacity += 64 - capacity % 64;
+                ids = Arrays.copyOf(ids, capacity);
+                times = Arrays.copyOf(times, capacity);
+                spaces = Arrays.copyOf(spaces, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+                openBits = Arrays.copyOf(openBits, capacity / 64);
+                fullBits = Arrays.copyOf(fullBits, capacity / 64);
+            }
+
+            ids[index] = id;
+            times[index] = time;
+            spaces[index] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, count));
+            statuses[index] = status;
+            if (open) {
+                openBits[index >> 6] |= 1L << index;
+            }
+            if (full) {
+                fullBits[index >> 6] |= 1L << index;
+            }
+
+            size = index + 1;
+            return true;
+        }
+
+        void forEach(int from, int to, ReadingVisitor visitor) {
+            int end = size;
+            int[] times = this.times;
+            short[] spaces = this.spaces;
+            long[] openBits = this.openBits;
+            long[] fullBits = this.fullBits;
+
+            for (int i = lowerBound(times, end, from); i < end && times[i] < to; i++) {
+                visitor.visit(i, times[i], spaces[i],
+                        (openBits[i >> 6] & (1L << i)) != 0,
+                        (fullBits[i >> 6] & (1L << i)) != 0);
+            }
+        }
+
+        private static int lowerBound(int[] times, int end, int value) {
+            int low = 0;
+            int high = end;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package je.glitch.data.api.cache;
+
+import je.glitch.data.api.database.tables.CarparkTable;
+import je.glitch.data.api.models.carpark.BusiestCarpark;
+import je.glitch.data.api.models.carpark.CarparkAvailability;
+import je.glitch.data.api.models.carpark.CarparkFullDay;
+import je.glitch.data.api.models.carpark.CarparkStatsBucket;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the parking stats chart in memory instead of aggregating the whole of
+ * liveParkingSpaces on every request.
+ *
+ * Readings are folded into counters per carpark, month and day of the week. Each
+ * refresh only aggregates rows newer than the last id seen (the watermark), and the
+ * published stats are rebuilt from the counters. Everything is recounted once a day
+ * to pick up rows that committed out of id order.
+ */
+@Slf4j
+public class ParkingStatsMaterializer {
+    private static final long REFRESH_INTERVAL_MINUTES = 5;
+    private static final long FULL_REBUILD_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final CarparkTable table;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "parking-stats-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched from refresh(), which is synchronized
+    private final Map<BucketKey, Counts> buckets = new HashMap<>();
+    private long watermark;
+    private long lastFullRebuild;
+
+    private volatile Map<String, Object> stats;
+
+    public ParkingStatsMaterializer(CarparkTable table) {
+        this.table = table;
+        this.scheduler.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_MINUTES, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> current = stats;
+        if (current == null) {
+            synchronized (this) {
+                if (stats == null) {
+                    refresh();
+                }
+                current = stats;
+            }
+        }
+        return current != null ? current : Map.of();
+    }
+
+    private synchronized void refresh() {
+        try {
+            if (System.currentTimeMillis() - lastFullRebuild > FULL_REBUILD_INTERVAL_MILLIS) {
+                buckets.clear();
+                watermark = 0;
+                lastFullRebuild = System.currentTimeMillis();
+            }
+
+            long latestId = table.getLatestSpaceId();
+            if (latestId < 0) {
+                return;
+            }
+
+            if (latestId > watermark) {
+                List<CarparkStatsBucket> rows = table.getStatsBuckets(watermark, latestId);
+                if (rows == null) {
+                    return;
+                }
+
+                for (CarparkStatsBucket row : rows) {
+                    BucketKey key = new BucketKey(row.getName(), row.getCode(), row.getYear(), row.getMonth(), row.getDayOfWeek());
+                    Counts counts = buckets.computeIfAbsent(key, k -> new Counts());
+                    counts.full += row.getFullCount();
+                    counts.available += row.getAvailableCount();
+                    counts.total += row.getTotal();
+                }
+                watermark = latestId;
+            }
+
+            // Rebuilt even without new rows, since "this year" moves on by itself
+            stats = buildStats();
+        } catch (Exception ex) {
+            log.error("Failed to refresh parking stats", ex);
+        }
+    }
+
+    private Map<String, Object> buildStats() {
+        Map<List<String>, Long> fullByCarpark = new HashMap<>();
+        Map<List<String>, Long> fullByDay = new HashMap<>();
+        Map<List<Object>, Counts> byMonth = new HashMap<>();
+
+        for (Map.Entry<BucketKey, Counts> entry : buckets.entrySet()) {
+            BucketKey key = entry.getKey();
+            Counts counts = entry.getValue();
+
+            if (counts.full > 0) {
+                fullByCarpark.merge(List.of(key.getName(), key.getCode()), counts.full, Long::sum);
+                fullByDay.merge(List.of(key.getName(), key.getCode(), key.getDayOfWeek()), counts.full, Long::sum);
+            }
+
+            Counts month = byMonth.computeIfAbsent(List.of(key.getName(), key.getCode(), key.getYear(), key.getMonth()), k -> new Counts());
+            month.available += counts.available;
+            month.total += counts.total;
+        }
+
+        List<BusiestCarpark> busiest = new ArrayList<>();
+        fullByCarpark.forEach((key, count) -> busiest.add(new BusiestCarpark(key.get(0), key.get(1), count.intValue())));
+        busiest.sort(Comparator.comparingInt(BusiestCarpark::getTimesFull).reversed());
+
+        List<CarparkFullDay> fullDays = new ArrayList<>();
+        fullByDay.forEach((key, count) -> fullDays.add(new CarparkFullDay(key.get(0), key.get(1), key.get(2), count.intValue())));
+        fullDays.sort(Comparator.comparing(CarparkFullDay::getName)
+                .thenComparing(Comparator.comparingInt(CarparkFullDay::getFullCount).reversed()));
+
+        int thisYear = LocalDate.now().getYear();
+        List<CarparkAvailability> lastYearAvailability = new ArrayList<>();
+        List<CarparkAvailability> thisYearAvailability = new ArrayList<>();
+
+        byMonth.forEach((key, counts) -> {
+            int year = (Integer) key.get(2);
+            if (year != thisYear && year != thisYear - 1) {
+                return;
+            }
+
+            double percentage = Math.round(10000.0 * counts.available / counts.total) / 100.0;
+            CarparkAvailability availability = new CarparkAvailability((String) key.get(0), (String) key.get(1), year, (Integer) key.get(3), percentage);
+            (year == thisYear ? thisYearAvailability : lastYearAvailability).add(availability);
+        });
+
+        Comparator<CarparkAvailability> byNameAndMonth = Comparator.comparing(CarparkAvailability::getName)
+                .thenComparingInt(CarparkAvailability::getYear)
+                .thenComparingInt(CarparkAvailability::getMonth);
+        lastYearAvailability.sort(byNameAndMonth);
+        thisYearAvailability.sort(byNameAndMonth);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("busiestCarparks", List.copyOf(busiest));
+        result.put("mostCommonFullDays", List.copyOf(fullDays));
+        result.put("availabilityLastYear", List.copyOf(lastYearAvailability));
+        result.put("availabilityThisYear", List.copyOf(thisYearAvailability));
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Data
+    private static class BucketKey {
+        private final String name;
+        private final String code;
+        private final int year;
+        private final int month;
+        private final String dayOfWeek;
+    }
+
+    private static class Counts {
+        private long full;
+        private long available;
+        private long total;
+    }
+}
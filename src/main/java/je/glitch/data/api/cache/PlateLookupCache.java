@@ -0,0 +1,119 @@
+package je.glitch.data.api.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.gson.JsonObject;
+import je.glitch.data.api.Server;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers plate lookups in memory and in redis, so repeat lookups of the same plate
+ * do not go back to the vehicle search site.
+ *
+ * Plates that were not found are cached too, for a much shorter time than plates that
+ * were, since a new registration can appear at any point.
+ */
+@Slf4j
+public class PlateLookupCache {
+    private static final String KEY_PREFIX = "plate-lookup:";
+    private static final String NOT_FOUND_VALUE = "null";
+
+    private static final long LOCAL_FOUND_TTL_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final long LOCAL_NOT_FOUND_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long REDIS_FOUND_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    private static final long REDIS_NOT_FOUND_TTL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+    private final JedisPool pool;
+    private final Cache<String, Entry> local = Caffeine.newBuilder()
+            .maximumSize(50_000)
+            .expireAfter(new Expiry<String, Entry>() {
+                @Override
+                public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                    return entry.isFound() ? LOCAL_FOUND_TTL_NANOS : LOCAL_NOT_FOUND_TTL_NANOS;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, entry, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    public PlateLookupCache(JedisPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return the cached lookup, or null if the plate has not been looked up recently
+     */
+    public Entry get(String plate) {
+        String key = normalize(plate);
+        Entry entry = local.getIfPresent(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        try (Jedis jedis = pool.getResource()) {
+            String raw = jedis.get(KEY_PREFIX + key);
+            if (raw == null) {
+                return null;
+            }
+            entry = new Entry(NOT_FOUND_VALUE.equals(raw) ? null : Server.GSON.fromJson(raw, JsonObject.class));
+            local.put(key, entry);
+            return entry;
+        } catch (Exception ex) {
+            log.error("Failed to read plate lookup from redis: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a finished lookup in both tiers.
+     *
+     * @param result the vehicle info, or null if the plate was not found
+     */
+    public void put(String plate, JsonObject result) {
+        String key = normalize(plate);
+        Entry entry = new Entry(result);
+        local.put(key, entry);
+
+        try (Jedis jedis = pool.getResource()) {
+            long ttl = entry.isFound() ? REDIS_FOUND_TTL_SECONDS : REDIS_NOT_FOUND_TTL_SECONDS;
+            String value = entry.isFound() ? Server.GSON.toJson(result) : NOT_FOUND_VALUE;
+            jedis.set(KEY_PREFIX + key, value, SetParams.setParams().ex(ttl));
+        } catch (Exception ex) {
+            log.error("Failed to write plate lookup to redis: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Plates are matched regardless of case and spacing.
+     */
+    public static String normalize(String plate) {
+        return plate.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final JsonObject result;
+
+        public boolean isFound() {
+            return result != null;
+        }
+    }
+}
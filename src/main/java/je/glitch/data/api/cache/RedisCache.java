@@ -1,33 +1,84 @@
 package je.glitch.data.api.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import je.glitch.data.api.Server;
 import je.glitch.data.api.models.LiveParkingSpace;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisPubSub;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
+/**
+ * Reads the datasets stored in redis by the fetcher.
+ *
+ * Values are kept in a local cache keyed by redis key, together with whatever form
+ * they were parsed into, so hot reads do not touch redis at all. Entries are dropped
+ * when the key changes, either through keyspace notifications or a message on
+ * {@link #INVALIDATION_CHANNEL} (the payload being the key), and otherwise expire
+ * after {@link #LOCAL_TTL_SECONDS} in case a notification is missed.
+ */
+@Slf4j
 public class RedisCache {
+    public static final String INVALIDATION_CHANNEL = "data-updates";
+    public static final String LIVE_SPACES_KEY = "data-livespaces:json";
+    public static final String EATSAFE_KEY = "data-eatsafe:json";
+    public static final String TOILETS_KEY = "data-toilets:json";
+    public static final String RECYCLING_KEY = "data-recycling:json";
+    public static final String DEFIBRILLATORS_KEY = "data-defibrillators:json";
+    public static final String BUS_PASSENGERS_KEY = "data-bus-passengers:json";
+    public static final String ROAD_TRAFFIC_KEY = "data-road-traffic:json";
+    public static final String DRIVING_TEST_RESULTS_KEY = "data-driving-test-results:json";
+    public static final String MONTHLY_RAINFALL_KEY = "data-monthly-rainfall:json";
+    public static final String REGISTERED_VEHICLES_KEY = "data-registered-vehicles:json";
+
+    private static final String HOST = "localhost";
+    private static final int PORT = 6379;
+    private static final String KEYSPACE_PATTERN = "__keyspace@*__:data-*";
+    private static final long LOCAL_TTL_SECONDS = 60;
+    private static final long RESUBSCRIBE_DELAY_MILLIS = 5000;
+
+    @Getter
     private final JedisPool pool;
 
+    private final Cache<String, CachedValue> local = Caffeine.newBuilder()
+            .expireAfterWrite(LOCAL_TTL_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(100)
+            .build();
+
     public RedisCache() {
-        this.pool = new JedisPool(new JedisPoolConfig(), "localhost", 6379);
+        this.pool = new JedisPool(new JedisPoolConfig(), HOST, PORT);
+
+        Thread subscriber = new Thread(this::runSubscriber, "redis-cache-invalidation");
+        subscriber.setDaemon(true);
+        subscriber.start();
     }
 
     public List<LiveParkingSpace> getLiveParkingSpaces() {
+        return getValue(LIVE_SPACES_KEY).parsed(RedisCache::parseLiveParkingSpaces);
+    }
+
+    private static List<LiveParkingSpace> parseLiveParkingSpaces(byte[] raw) {
         List<LiveParkingSpace> parkingSpaces = new ArrayList<>();
 
-        try (Jedis jedis = pool.getResource()) {
-            String rawData = jedis.get("data-livespaces:json");
-            if (rawData != null) {
-                JsonObject data = Server.GSON.fromJson(rawData, JsonObject.class);
+        try {
+            if (raw != null) {
+                JsonObject data = Server.GSON.fromJson(new String(raw, StandardCharsets.UTF_8), JsonObject.class);
                 JsonArray results = data.getAsJsonArray("results");
 
                 for (JsonElement element : results) {
@@ -47,43 +98,43 @@ public class RedisCache {
         } catch (Exception ex) {
             ex.printStackTrace();
         }
-        return parkingSpaces;
+        return Collections.unmodifiableList(parkingSpaces);
     }
 
     public JsonElement getEatSafeData() {
-        return getBasicData("data-eatsafe:json");
+        return getBasicData(EATSAFE_KEY);
     }
 
     public JsonElement getToiletData() {
-        return getBasicData("data-toilets:json");
+        return getBasicData(TOILETS_KEY);
     }
 
     public JsonElement getRecyclingData() {
-        return getBasicData("data-recycling:json");
+        return getBasicData(RECYCLING_KEY);
     }
 
     public JsonElement getDefibrillatorData() {
-        return getBasicData("data-defibrillators:json");
+        return getBasicData(DEFIBRILLATORS_KEY);
     }
 
     public JsonElement getBusPassengersChartData() {
-        return getBasicData("data-bus-passengers:json");
+        return getBasicData(BUS_PASSENGERS_KEY);
     }
 
     public JsonElement getRoadTrafficChartData() {
-        return getBasicData("data-road-traffic:json");
+        return getBasicData(ROAD_TRAFFIC_KEY);
     }
 
     public JsonElement getDrivingTestResultsChartData() {
-        return getBasicData("data-driving-test-results:json");
+        return getBasicData(DRIVING_TEST_RESULTS_KEY);
     }
 
     public JsonElement getMonthlyRainfallData() {
-        return getBasicData("data-monthly-rainfall:json");
+        return getBasicData(MONTHLY_RAINFALL_KEY);
     }
 
     public JsonElement getRegisteredVehiclesChartData() {
-        return getBasicData("data-registered-vehicles:json");
+        return getBasicData(REGISTERED_VEHICLES_KEY);
     }
 
     public boolean checkFetcherHeartbeat() {
@@ -104,15 +155,105 @@ public class RedisCache {
         }
     }
 
+    /**
+     * Returns the raw bytes stored at a key without parsing them, so static
+     * datasets can be passed straight through to the response.
+     *
+     * @param key the redis key
+     * @return the raw value, or null if the key does not exist
+     */
+    public byte[] getRawData(String key) {
+        return getValue(key).getRaw();
+    }
+
+    /**
+     * Drops the local copy of a key, so the next read goes to redis.
+     */
+    public void invalidate(String key) {
+        local.invalidate(key);
+    }
+
     private JsonElement getBasicData(String key) {
+        return getValue(key).parsed(raw -> raw != null
+                ? Server.GSON.fromJson(new String(raw, StandardCharsets.UTF_8), JsonElement.class)
+                : null);
+    }
+
+    private CachedValue getValue(String key) {
+        CachedValue cached = local.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
         try (Jedis jedis = pool.getResource()) {
-            String rawData = jedis.get(key);
-            if (rawData != null) {
-                return Server.GSON.fromJson(rawData, JsonElement.class);
-            }
+            // Loaded through the cache so an invalidation that arrives mid-read wins
+            return local.get(key, k -> new CachedValue(jedis.get(k.getBytes(StandardCharsets.UTF_8))));
         } catch (Exception ex) {
             ex.printStackTrace();
+            return new CachedValue(null);
+        }
+    }
+
+    /**
+     * Listens for changes to the fetcher's keys on a dedicated connection, reconnecting
+     * if it drops. Anything may have changed while disconnected, so the local cache is
+     * cleared each time the subscription is (re)established.
+     */
+    private void runSubscriber() {
+        JedisPubSub listener = new JedisPubSub() {
+            @Override
+            public void onPSubscribe(String pattern, int subscribedChannels) {
+                local.invalidateAll();
+            }
+
+            @Override
+            public void onPMessage(String pattern, String channel, String message) {
+                if (channel.equals(INVALIDATION_CHANNEL)) {
+                    invalidate(message);
+                } else {
+                    // __keyspace@0__:data-eatsafe:json
+                    invalidate(channel.substring(channel.indexOf("__:") + 3));
+                }
+            }
+        };
+
+        while (true) {
+            try (Jedis jedis = new Jedis(HOST, PORT)) {
+                jedis.psubscribe(listener, KEYSPACE_PATTERN, INVALIDATION_CHANNEL);
+            } catch (Exception ex) {
+                log.warn("Lost redis invalidation subscription: " + ex.getMessage());
+            }
+
+            local.invalidateAll();
+            try {
+                Thread.sleep(RESUBSCRIBE_DELAY_MILLIS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A redis value and its parsed form, which is computed at most once.
+     */
+    @RequiredArgsConstructor
+    private static class CachedValue {
+        @Getter
+        private final byte[] raw;
+        private volatile Object parsed;
+        private volatile boolean isParsed;
+
+        @SuppressWarnings("unchecked")
+        <T> T parsed(Function<byte[], T> parser) {
+            if (!isParsed) {
+                synchronized (this) {
+                    if (!isParsed) {
+                        parsed = parser.apply(raw);
+                        isParsed = true;
+                    }
+                }
+            }
+            return (T) parsed;
         }
-        return null;
     }
 }
@@ -0,0 +1,534 @@
+package je.glitch.data.api.cache;
+
+import io.javalin.http.Context;
+import je.glitch.data.api.utils.CompressedBitmap;
+import je.glitch.data.api.utils.Utils;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, column oriented copy of the vehicles table.
+ *
+ * Text columns are dictionary encoded, so each row holds an int code per column and
+ * filters are resolved against the (small) dictionaries once per query. Dates are
+ * stored as epoch days. Rows are kept in listing order, newest registration first,
+ * so a page of results is just the first matching rows from a given position.
+ *
+ * Every make, model, color and fuel type code has a {@link CompressedBitmap} of the
+ * rows holding it, as does every month of both registration dates. A filter is the
+ * AND of one OR per parameter, so its count is the bitmap's cardinality and a page is
+ * read straight off the bitmap in row order.
+ */
+public class VehicleColumns {
+    public static final int NULL_INT = Integer.MIN_VALUE;
+
+    @Getter
+    private final int size;
+    private final int[] ids;
+    private final int[] firstRegistered;
+    private final int[] firstRegisteredInJersey;
+    private final int[] make;
+    private final int[] model;
+    private final int[] color;
+    private final int[] fuelType;
+    private final int[] weight;
+    private final int[] makeModel;
+    private final int[] cylinderCapacity;
+    private final int[] co2Emissions;
+
+    @Getter
+    private final Dictionary makes;
+    @Getter
+    private final Dictionary models;
+    @Getter
+    private final Dictionary colors;
+    private final Dictionary fuelTypes;
+    private final Dictionary weights;
+    // Make and model code of each distinct pair
+    private final int[] pairMake;
+    private final int[] pairModel;
+
+    private final CompressedBitmap[] makeIndex;
+    private final CompressedBitmap[] modelIndex;
+    private final CompressedBitmap[] colorIndex;
+    private final CompressedBitmap[] fuelTypeIndex;
+    // Keyed by year * 12 + month - 1
+    private final TreeMap<Integer, CompressedBitmap> registeredMonths;
+    private final TreeMap<Integer, CompressedBitmap> jerseyMonths;
+
+    private VehicleColumns(Builder builder) {
+        this.size = builder.size;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.firstRegistered = Arrays.copyOf(builder.firstRegistered, size);
+        this.firstRegisteredInJersey = Arrays.copyOf(builder.firstRegisteredInJersey, size);
+        this.make = Arrays.copyOf(builder.make, size);
+        this.model = Arrays.copyOf(builder.model, size);
+        this.color = Arrays.copyOf(builder.color, size);
+        this.fuelType = Arrays.copyOf(builder.fuelType, size);
+        this.weight = Arrays.copyOf(builder.weight, size);
+        this.makeModel = Arrays.copyOf(builder.makeModel, size);
+        this.cylinderCapacity = Arrays.copyOf(builder.cylinderCapacity, size);
+        this.co2Emissions = Arrays.copyOf(builder.co2Emissions, size);
+        this.makes = builder.makes.build();
+        this.models = builder.models.build();
+        this.colors = builder.colors.build();
+        this.fuelTypes = builder.fuelTypes.build();
+        this.weights = builder.weights.build();
+
+        int pairs = builder.pairs.size();
+        this.pairMake = new int[pairs];
+        this.pairModel = new int[pairs];
+        builder.pairs.forEach((key, pair) -> {
+            pairMake[pair] = (int) (key >>> 32);
+            pairModel[pair] = (int) (long) key;
+        });
+
+        this.makeIndex = buildIndex(make, makes.size());
+        this.modelIndex = buildIndex(model, models.size());
+        this.colorIndex = buildIndex(color, colors.size());
+        this.fuelTypeIndex = buildIndex(fuelType, fuelTypes.size());
+        this.registeredMonths = buildMonthIndex(firstRegistered);
+        this.jerseyMonths = buildMonthIndex(firstRegisteredInJersey);
+    }
+
+    private CompressedBitmap[] buildIndex(int[] column, int cardinality) {
+        CompressedBitmap.Builder[] builders = new CompressedBitmap.Builder[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            builders[i] = CompressedBitmap.builder();
+        }
+        for (int row = 0; row < size; row++) {
+            builders[column[row]].add(row);
+        }
+
+        CompressedBitmap[] index = new CompressedBitmap[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            index[i] = builders[i].build();
+        }
+        return index;
+    }
+
+    private TreeMap<Integer, CompressedBitmap> buildMonthIndex(int[] days) {
+        Map<Integer, CompressedBitmap.Builder> builders = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            builders.computeIfAbsent(monthOf(days[row]), k -> CompressedBitmap.builder()).add(row);
+        }
+
+        TreeMap<Integer, CompressedBitmap> index = new TreeMap<>();
+        builders.forEach((month, builder) -> index.put(month, builder.build()));
+        return index;
+    }
+
+    private static int monthOf(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Finds the rows of one page of results.
+     *
+     * @param from the row to start looking from
+     * @param skip how many matching rows to skip first
+     * @param limit the maximum number of rows to return
+     */
+    public List<Integer> findRows(Filter filter, int from, int skip, int limit) {
+        CompressedBitmap selected = select(filter);
+        List<Integer> rows = new ArrayList<>(Math.min(limit, 1024));
+
+        if (selected == null) {
+            for (int i = from + skip; i < size && rows.size() < limit; i++) {
+                rows.add(i);
+            }
+            return rows;
+        }
+
+        CompressedBitmap.Cursor cursor = selected.cursor(from);
+        for (int row = cursor.next(); row >= 0 && rows.size() < limit; row = cursor.next()) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The first row that sorts after the given registration date and id in listing order.
+     */
+    public int seekAfter(LocalDate registeredAt, long id) {
+        int day = (int) registeredAt.toEpochDay();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            boolean before = firstRegistered[mid] > day || (firstRegistered[mid] == day && ids[mid] >= id);
+            if (before) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int count(Filter filter) {
+        CompressedBitmap selected = select(filter);
+        return selected != null ? selected.cardinality() : size;
+    }
+
+    public int[] countByMake(Filter filter) {
+        return countBy(make, makeIndex, filter);
+    }
+
+    public int[] countByModel(Filter filter) {
+        return countBy(model, modelIndex, filter);
+    }
+
+    public int[] countByColor(Filter filter) {
+        return countBy(color, colorIndex, filter);
+    }
+
+    /**
+     * @return counts indexed by make/model pair, see {@link #getPairMake} and {@link #getPairModel}
+     */
+    public int[] countByMakeModel(Filter filter) {
+        return countBy(makeModel, pairMake.length, filter);
+    }
+
+    public String getPairMake(int pair) {
+        return makes.get(pairMake[pair]);
+    }
+
+    public String getPairModel(int pair) {
+        return models.get(pairModel[pair]);
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * The row as the listing endpoint returns it.
+     */
+    public Map<String, Object> getRow(int row) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("firstRegisteredAt", LocalDate.ofEpochDay(firstRegistered[row]).toString());
+        map.put("firstRegisteredInJerseyAt", LocalDate.ofEpochDay(firstRegisteredInJersey[row]).toString());
+        map.put("make", makes.get(make[row]));
+        map.put("model", models.get(model[row]));
+        map.put("color", colors.get(color[row]));
+        map.put("cylinderCapacity", nullable(cylinderCapacity[row]));
+        map.put("weight", weights.get(weight[row]));
+        map.put("co2Emissions", nullable(co2Emissions[row]));
+        map.put("fuelType", fuelTypes.get(fuelType[row]));
+        return map;
+    }
+
+    private static Integer nullable(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    private int[] countBy(int[] column, CompressedBitmap[] index, Filter filter) {
+        if (select(filter) != null) {
+            return countBy(column, index.length, filter);
+        }
+
+        // Unfiltered counts are just the size of each value's bitmap
+        int[] counts = new int[index.length];
+        for (int code = 0; code < index.length; code++) {
+            counts[code] = index[code].cardinality();
+        }
+        return counts;
+    }
+
+    private int[] countBy(int[] column, int cardinality, Filter filter) {
+        int[] counts = new int[cardinality];
+        CompressedBitmap selected = select(filter);
+
+        if (selected == null) {
+            for (int row = 0; row < size; row++) {
+                counts[column[row]]++;
+            }
+            return counts;
+        }
+
+        CompressedBitmap.Cursor cursor = selected.cursor(0);
+        for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+            counts[column[row]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * The rows matching a filter, or null if the filter matches every row.
+     */
+    private CompressedBitmap select(Filter filter) {
+        if (filter.selectedFrom == this) {
+            return filter.selected;
+        }
+
+        List<CompressedBitmap> parts = new ArrayList<>();
+        addLike(parts, filter.make, makes, makeIndex);
+        addLike(parts, filter.model, models, modelIndex);
+        addLike(parts, filter.color, colors, colorIndex);
+        if (filter.fuelType != null) {
+            String fuel = filter.fuelType.toLowerCase(Locale.ROOT);
+            parts.add(union(fuelTypes.matching(v -> v.toLowerCase(Locale.ROOT).equals(fuel)), fuelTypeIndex));
+        }
+        addDateRange(parts, registeredMonths, firstRegistered, filter.registeredFrom, filter.registeredTo);
+        addDateRange(parts, jerseyMonths, firstRegisteredInJersey, filter.jerseyFrom, filter.jerseyTo);
+
+        CompressedBitmap selected = null;
+        for (CompressedBitmap part : parts) {
+            selected = selected == null ? part : CompressedBitmap.and(selected, part);
+        }
+
+        // Remembered so the count and the page of one request only evaluate it once
+        filter.selected = selected;
+        filter.selectedFrom = this;
+        return selected;
+    }
+
+    private static void addLike(List<CompressedBitmap> parts, String value, Dictionary dictionary, CompressedBitmap[] index) {
+        if (value != null) {
+            String like = value.toLowerCase(Locale.ROOT);
+            parts.add(union(dictionary.matching(v -> v.toLowerCase(Locale.ROOT).contains(like)), index));
+        }
+    }
+
+    private static CompressedBitmap union(boolean[] codes, CompressedBitmap[] index) {
+        List<CompressedBitmap> bitmaps = new ArrayList<>();
+        for (int code = 0; code < codes.length; code++) {
+            if (codes[code]) {
+                bitmaps.add(index[code]);
+            }
+        }
+        return CompressedBitmap.or(bitmaps);
+    }
+
+    /**
+     * Months entirely inside the range are taken whole, the months at either end are
+     * narrowed down to the matching days.
+     */
+    private static void addDateRange(List<CompressedBitmap> parts, TreeMap<Integer, CompressedBitmap> months, int[] days, int from, int to) {
+        if (from == Integer.MIN_VALUE && to == Integer.MAX_VALUE) {
+            return;
+        }
+        if (months.isEmpty() || from > to) {
+            parts.add(CompressedBitmap.empty());
+            return;
+        }
+
+        int firstMonth = from == Integer.MIN_VALUE ? months.firstKey() : monthOf(from);
+        int lastMonth = to == Integer.MAX_VALUE ? months.lastKey() : monthOf(to);
+        if (firstMonth > lastMonth) {
+            parts.add(CompressedBitmap.empty());
+            return;
+        }
+
+        List<CompressedBitmap> bitmaps = new ArrayList<>();
+        for (Map.Entry<Integer, CompressedBitmap> entry : months.subMap(firstMonth, true, lastMonth, true).entrySet()) {
+            int month = entry.getKey();
+            boolean partial = (from != Integer.MIN_VALUE && month == firstMonth) || (to != Integer.MAX_VALUE && month == lastMonth);
+            if (!partial) {
+                bitmaps.add(entry.getValue());
+                continue;
+            }
+
+            CompressedBitmap.Builder builder = CompressedBitmap.builder();
+            CompressedBitmap.Cursor cursor = entry.getValue().cursor(0);
+            for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+                if (days[row] >= from && days[row] <= to) {
+                    builder.add(row);
+                }
+            }
+            bitmaps.add(builder.build());
+        }
+        parts.add(CompressedBitmap.or(bitmaps));
+    }
+
+    /**
+     * The vehicle query parameters, with the same meaning as the SQL they replace:
+     * make, model and color match anywhere in the value, fuelType matches exactly,
+     * all ignoring case, and the date bounds are inclusive.
+     */
+    public static class Filter {
+        private String make;
+        private String model;
+        private String color;
+        private String fuelType;
+        private int registeredFrom = Integer.MIN_VALUE;
+        private int registeredTo = Integer.MAX_VALUE;
+        private int jerseyFrom = Integer.MIN_VALUE;
+        private int jerseyTo = Integer.MAX_VALUE;
+
+        // The rows matching this filter in one VehicleColumns, filled in on first use
+        private CompressedBitmap selected;
+        private VehicleColumns selectedFrom;
+
+        /**
+         * @param withAttributes whether to read the make, model, color and fuelType parameters
+         *                       as well as the dates
+         * @throws IllegalArgumentException if a date is not in a supported format
+         */
+        public static Filter fromQuery(Context ctx, boolean withAttributes) {
+            Filter filter = new Filter();
+            if (withAttributes) {
+                filter.make = ctx.queryParam("make");
+                filter.model = ctx.queryParam("model");
+                filter.color = ctx.queryParam("color");
+                filter.fuelType = ctx.queryParam("fuelType");
+            }
+
+            filter.registeredFrom = parseDay(ctx.queryParam("firstRegisteredAfter"), "firstRegisteredAt", Integer.MIN_VALUE);
+            filter.registeredTo = parseDay(ctx.queryParam("firstRegisteredBefore"), "firstRegisteredAt", Integer.MAX_VALUE);
+            filter.jerseyFrom = parseDay(ctx.queryParam("firstRegisteredInJerseyAfter"), "firstRegisteredInJerseyAt", Integer.MIN_VALUE);
+            filter.jerseyTo = parseDay(ctx.queryParam("firstRegisteredInJerseyBefore"), "firstRegisteredInJerseyAt", Integer.MAX_VALUE);
+            return filter;
+        }
+
+        private static int parseDay(String value, String field, int unbounded) {
+            if (value == null || value.isEmpty()) {
+                return unbounded;
+            }
+            if (!Utils.DATE_FORMAT.matcher(value).matches()) {
+                throw new IllegalArgumentException("Invalid date format for " + field + ". Please use YYYY/MM/DD or YYYY-MM-DD.");
+            }
+            return (int) LocalDate.parse(value.replace('/', '-')).toEpochDay();
+        }
+    }
+
+    /**
+     * Maps the distinct values of a column to dense int codes. Values are matched
+     * ignoring case, as MySQL's collation does, and keep the first spelling seen.
+     * Null is a value like any other.
+     */
+    public static class Dictionary {
+        private final String[] values;
+
+        private Dictionary(String[] values) {
+            this.values = values;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public String get(int code) {
+            return values[code];
+        }
+
+        /**
+         * @return for each code, whether its value is non-null and accepted by the predicate
+         */
+        public boolean[] matching(Predicate<String> predicate) {
+            boolean[] matches = new boolean[values.length];
+            for (int i = 0; i < values.length; i++) {
+                matches[i] = values[i] != null && predicate.test(values[i]);
+            }
+            return matches;
+        }
+
+        private static class Builder {
+            private final Map<String, Integer> codes = new HashMap<>();
+            private final List<String> values = new ArrayList<>();
+
+            int encode(String value) {
+                String key = value != null ? value.toLowerCase(Locale.ROOT) : null;
+                Integer code = codes.get(key);
+                if (code == null) {
+                    code = values.size();
+                    codes.put(key, code);
+                    values.add(value);
+                }
+                return code;
+            }
+
+            Dictionary build() {
+                return new Dictionary(values.toArray(new String[0]));
+            }
+        }
+    }
+
+    /**
+     * Collects rows, which must be added in listing order.
+     */
+    public static class Builder {
+        private int size;
+        private int[] ids = new int[1024];
+        private int[] firstRegistered = new int[1024];
+        private int[] firstRegisteredInJersey = new int[1024];
+        private int[] make = new int[1024];
+        private int[] model = new int[1024];
+        private int[] color = new int[1024];
+        private int[] fuelType = new int[1024];
+        private int[] weight = new int[1024];
+        private int[] makeModel = new int[1024];
+        private int[] cylinderCapacity = new int[1024];
+        private int[] co2Emissions = new int[1024];
+
+        private final Dictionary.Builder makes = new Dictionary.Builder();
+        private final Dictionary.Builder models = new Dictionary.Builder();
+        private final Dictionary.Builder colors = new Dictionary.Builder();
+        private final Dictionary.Builder fuelTypes = new Dictionary.Builder();
+        private final Dictionary.Builder weights = new Dictionary.Builder();
+        private final Map<Long, Integer> pairs = new HashMap<>();
+
+        public void add(int id, LocalDate firstRegisteredAt, LocalDate firstRegisteredInJerseyAt, String make, String model,
+                        String color, Integer cylinderCapacity, String weight, Integer co2Emissions, String fuelType) {
+            if (size == ids.length) {
+                grow();
+            }
+
+            int makeCode = makes.encode(make);
+            int modelCode = models.encode(model);
+            long pairKey = ((long) makeCode << 32) | modelCode;
+
+            this.ids[size] = id;
+            this.firstRegistered[size] = (int) firstRegisteredAt.toEpochDay();
+            this.firstRegisteredInJersey[size] = (int) firstRegisteredInJerseyAt.toEpochDay();
+            this.make[size] = makeCode;
+            this.model[size] = modelCode;
+            this.color[size] = colors.encode(color);
+            this.fuelType[size] = fuelTypes.encode(fuelType);
+            this.weight[size] = weights.encode(weight);
+            this.makeModel[size] = pairs.computeIfAbsent(pairKey, k -> pairs.size());
+            this.cylinderCapacity[size] = cylinderCapacity != null ? cylinderCapacity : NULL_INT;
+            this.co2Emissions[size] = co2Emissions != null ? co2Emissions : NULL_INT;
+            size++;
+        }
+
+        public VehicleColumns build() {
+            return new VehicleColumns(this);
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            firstRegistered = Arrays.copyOf(firstRegistered, capacity);
+            firstRegisteredInJersey = Arrays.copyOf(firstRegisteredInJersey, capacity);
+            make = Arrays.copyOf(make, capacity);
+            model = Arrays.copyOf(model, capacity);
+            color = Arrays.copyOf(color, capacity);
+            fuelType = Arrays.copyOf(fuelType, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+            makeModel = Arrays.copyOf(makeModel, capacity);
+            cylinderCapacity = Arrays.copyOf(cylinderCapacity, capacity);
+            co2Emissions = Arrays.copyOf(co2Emissions, capacity);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package je.glitch.data.api.cache;
+
+import je.glitch.data.api.database.tables.VehicleTable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the vehicles table in memory as {@link VehicleColumns}.
+ *
+ * The registry only changes when the fetcher imports, so the table's fingerprint is
+ * checked every few minutes and the whole dataset is reloaded when it changes. It is
+ * also reloaded once a day in case rows were updated in place. Until the first load
+ * finishes, {@link #getColumns()} returns null and callers should go to MySQL.
+ *
+ * The make and model {@link VehicleSuggestions} are rebuilt with every load.
+ */
+@Slf4j
+public class VehicleDataset {
+    private static final long REFRESH_INTERVAL_MINUTES = 5;
+    private static final long FULL_RELOAD_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final VehicleTable table;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "vehicle-dataset-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched from refresh(), which runs on the scheduler thread
+    private String fingerprint;
+    private long lastFullReload;
+
+    private volatile VehicleColumns columns;
+    private volatile VehicleSuggestions suggestions;
+
+    public VehicleDataset(VehicleTable table) {
+        this.table = table;
+        this.scheduler.scheduleWithFixedDelay(this::refresh, 0, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public VehicleColumns getColumns() {
+        return columns;
+    }
+
+    public VehicleSuggestions getSuggestions() {
+        return suggestions;
+    }
+
+    private void refresh() {
+        try {
+            String latest = table.getFingerprint();
+            if (latest == null) {
+                return;
+            }
+
+            boolean due = System.currentTimeMillis() - lastFullReload > FULL_RELOAD_INTERVAL_MILLIS;
+            if (!due && latest.equals(fingerprint)) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            VehicleColumns.Builder builder = VehicleColumns.builder();
+            table.streamVehicles(builder::add);
+            VehicleColumns loaded = builder.build();
+            suggestions = new VehicleSuggestions(loaded);
+            columns = loaded;
+
+            fingerprint = latest;
+            lastFullReload = System.currentTimeMillis();
+            log.info("Loaded " + columns.getSize() + " vehicles in " + (lastFullReload - start) + "ms");
+        } catch (Exception ex) {
+            log.error("Failed to load vehicles", ex);
+        }
+    }
+}
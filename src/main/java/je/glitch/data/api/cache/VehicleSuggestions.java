@@ -0,0 +1,56 @@
+package je.glitch.data.api.cache;
+
+import je.glitch.data.api.modelsnew.outbound.vehicle.VehicleSuggestionResponse;
+import je.glitch.data.api.utils.WeightedTrie;
+
+import java.util.List;
+
+/**
+ * Make and model completions for typeahead, weighted by how many vehicles have them.
+ *
+ * Built from one {@link VehicleColumns}, so it is rebuilt whenever the dataset reloads.
+ * Models can be found by the model name on its own or by "make model".
+ */
+public class VehicleSuggestions {
+    private final WeightedTrie<VehicleSuggestionResponse> makes = new WeightedTrie<>();
+    private final WeightedTrie<VehicleSuggestionResponse> models = new WeightedTrie<>();
+
+    public VehicleSuggestions(VehicleColumns columns) {
+        VehicleColumns.Filter all = new VehicleColumns.Filter();
+
+        int[] makeCounts = columns.countByMake(all);
+        for (int code = 0; code < makeCounts.length; code++) {
+            String make = columns.getMakes().get(code);
+            if (makeCounts[code] > 0 && make != null && !make.isBlank()) {
+                makes.insert(make, new VehicleSuggestionResponse(make, make, null, makeCounts[code]), makeCounts[code]);
+            }
+        }
+
+        int[] pairCounts = columns.countByMakeModel(all);
+        for (int pair = 0; pair < pairCounts.length; pair++) {
+            String make = columns.getPairMake(pair);
+            String model = columns.getPairModel(pair);
+            if (pairCounts[pair] == 0 || model == null || model.isBlank()) {
+                continue;
+            }
+
+            String value = make != null ? make + " " + model : model;
+            VehicleSuggestionResponse suggestion = new VehicleSuggestionResponse(value, make, model, pairCounts[pair]);
+            models.insert(model, suggestion, pairCounts[pair]);
+            if (make != null) {
+                models.insert(value, suggestion, pairCounts[pair]);
+            }
+        }
+
+        makes.build();
+        models.build();
+    }
+
+    public List<VehicleSuggestionResponse> suggestMakes(String prefix, int limit) {
+        return makes.top(prefix.trim(), limit);
+    }
+
+    public List<VehicleSuggestionResponse> suggestModels(String prefix, int limit) {
+        return models.top(prefix.trim(), limit);
+    }
+}
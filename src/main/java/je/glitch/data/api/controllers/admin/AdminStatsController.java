@@ -9,7 +9,9 @@ import je.glitch.data.api.models.ApiResponse;
 import je.glitch.data.api.modelsnew.entities.DailyRequestStatEntity;
 import je.glitch.data.api.modelsnew.entities.EndpointRequestStatEntity;
 import je.glitch.data.api.modelsnew.outbound.admin.AdminRequestStatsResponse;
+import je.glitch.data.api.services.RequestLogService;
 import je.glitch.data.api.utils.Utils;
+import je.glitch.data.api.utils.upstream.UpstreamClient;
 import lombok.RequiredArgsConstructor;
 
 import java.time.LocalDate;
@@ -20,6 +22,8 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AdminStatsController {
     private final MySQLConnection connection;
+    private final RequestLogService requestLogService;
+    private final UpstreamClient upstream;
 
     public void handleGetStats(Context ctx) {
         ApiRequestStatsEntity stats = connection.getLogTable().getRequestStats();
@@ -87,4 +91,11 @@ public class AdminStatsController {
         ctx.json(new ApiResponse<>(array));
     }
 
+    public void handleGetRequestLogMetrics(Context ctx) {
+        ctx.json(new ApiResponse<>(requestLogService.getMetrics()));
+    }
+
+    public void handleGetUpstreamMetrics(Context ctx) {
+        ctx.json(new ApiResponse<>(upstream.getMetrics()));
+    }
 }
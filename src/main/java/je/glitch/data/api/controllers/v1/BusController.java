@@ -6,26 +6,33 @@ import je.glitch.data.api.modelsnew.outbound.bus.BusStopLiveDepartureResponse;
 import je.glitch.data.api.modelsnew.outbound.bus.BusStopResponse;
 import je.glitch.data.api.modelsnew.outbound.bus.BusStopWithDeparturesResponse;
 import je.glitch.data.api.services.BusService;
+import je.glitch.data.api.utils.CoalescingLoader;
 import je.glitch.data.api.utils.ErrorResponse;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.Utils;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
+import je.glitch.data.api.utils.ratelimit.RateLimitBackend;
 import je.glitch.data.api.utils.ratelimit.RateLimitConfig;
 import je.glitch.data.api.utils.ratelimit.RateLimitType;
 import je.glitch.data.api.utils.ratelimit.RateLimiter;
-import lombok.RequiredArgsConstructor;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
-@RequiredArgsConstructor
 public class BusController {
+    private static final int MAX_RADIUS_METRES = 50_000;
+
     private final BusService service;
-    private final RateLimiter rateLimiter = new RateLimiter(Map.of(
-            RateLimitType.DEFAULT, new RateLimitConfig(60, 1, TimeUnit.HOURS),
-            RateLimitType.AUTHENTICATED, new RateLimitConfig(150, 1, TimeUnit.HOURS)
-    ));
+    private final RateLimiter rateLimiter;
+
+    public BusController(BusService service, RateLimitBackend rateLimitBackend) {
+        this.service = service;
+        this.rateLimiter = new RateLimiter(Map.of(
+                RateLimitType.DEFAULT, new RateLimitConfig(60, 1, TimeUnit.HOURS),
+                RateLimitType.AUTHENTICATED, new RateLimitConfig(150, 1, TimeUnit.HOURS)
+        ), rateLimitBackend);
+    }
 
     public void handleGetStops(Context ctx) {
         rateLimiter.handleRequest(ctx);
@@ -33,7 +40,8 @@ public class BusController {
     }
 
     public void handleGetRoutes(Context ctx) {
-        ctx.json(new ApiResponse<>(service.getBusRoutes()));
+        ctx.future(() -> service.getBusRoutes()
+                .thenAccept(result -> StreamingJsonMapper.stream(ctx, new ApiResponse<>(withAge(ctx, result)))));
     }
 
     public void handleGetStop(Context ctx) {
@@ -51,12 +59,10 @@ public class BusController {
             return;
         }
 
-        List<BusStopLiveDepartureResponse> departures = service.getStopLiveDepartures(id);
-
-        if (departures == null) {
-            departures = new ArrayList<>();
-        }
-        ctx.json(new ApiResponse<>(new BusStopWithDeparturesResponse(stop, departures)));
+        ctx.future(() -> service.getStopLiveDepartures(id).thenAccept(result -> {
+            List<BusStopLiveDepartureResponse> departures = withAge(ctx, result);
+            StreamingJsonMapper.stream(ctx, new ApiResponse<>(new BusStopWithDeparturesResponse(stop, departures)));
+        }));
     }
 
     public void handleGetLiveUpdates(Context ctx) {
@@ -77,6 +83,10 @@ public class BusController {
             ctx.status(400).json(new ErrorResponse(ErrorType.INVALID_REQUEST, "lat and lon are required when using radius or limitTo"));
             return;
         }
+        if (radius != null && (radius < 1 || radius > MAX_RADIUS_METRES)) {
+            ctx.status(400).json(new ErrorResponse(ErrorType.INVALID_REQUEST, "radius must be between 1 and " + MAX_RADIUS_METRES + " metres"));
+            return;
+        }
         if (lat != null && lon != null) {
             if (radius == null) {
                 radius = 500;
@@ -108,6 +118,10 @@ public class BusController {
             ctx.status(400).json(new ErrorResponse(ErrorType.INVALID_REQUEST, "lat and lon are required when using radius or limitTo"));
             return;
         }
+        if (radius != null && (radius < 1 || radius > MAX_RADIUS_METRES)) {
+            ctx.status(400).json(new ErrorResponse(ErrorType.INVALID_REQUEST, "radius must be between 1 and " + MAX_RADIUS_METRES + " metres"));
+            return;
+        }
         if (lat != null && lon != null) {
             if (radius == null) {
                 radius = 500;
@@ -120,4 +134,15 @@ public class BusController {
         var updates = service.getMinUpdates(secondsAgo, lat, lon, radius, limitTo);
         ctx.json(new ApiResponse<>(updates));
     }
+
+    /**
+     * Sets the Age header when a value came from the cache rather than straight from
+     * the bus API, which is always the case when the API is failing or slow.
+     */
+    private static <T> T withAge(Context ctx, CoalescingLoader.Result<T> result) {
+        if (result.isStale() || result.getAgeSeconds() > 0) {
+            ctx.header("Age", String.valueOf(result.getAgeSeconds()));
+        }
+        return result.getValue();
+    }
 }
@@ -1,18 +1,29 @@
 package je.glitch.data.api.controllers.v1;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
 import io.javalin.http.Context;
+import io.javalin.http.sse.SseClient;
 import je.glitch.data.api.models.*;
+import je.glitch.data.api.modelsnew.outbound.carpark.CarparkHistoryResponse;
 import je.glitch.data.api.services.CarparkService;
 import je.glitch.data.api.utils.ErrorResponse;
 import je.glitch.data.api.utils.ErrorType;
+import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.OccupancySeries;
+import je.glitch.data.api.utils.SpacesExportWriter;
+import je.glitch.data.api.utils.Utils;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
 import lombok.RequiredArgsConstructor;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
 @RequiredArgsConstructor
 public class CarparkController {
-    private static final Gson compactGson = new GsonBuilder().create();
+    private static final int DEFAULT_HISTORY_POINTS = 500;
+    private static final int MAX_HISTORY_POINTS = 5000;
+
     private final CarparkService service;
 
     public void handleGetCarparks(Context ctx) {
@@ -36,9 +47,17 @@ public class CarparkController {
         ctx.json(new ApiResponse<>(service.getLiveSpaces(includeCarparkInfo)));
     }
 
+    /**
+     * Server-sent events stream of live spaces: a "snapshot" event with every carpark,
+     * then "changes" events with only the carparks that changed.
+     */
+    public void handleLiveSpacesStream(SseClient client) {
+        service.subscribeToLiveSpaces(client);
+    }
+
     public void handleGetLiveSpacesForDate(Context ctx) {
         String date = ctx.pathParam("date");
-        ctx.json(new ApiResponse<>(service.getLiveSpacesForDate(date)));
+        StreamingJsonMapper.stream(ctx, new ApiResponse<>(service.getLiveSpacesForDate(date)));
     }
 
     public void handleGetLiveSpacesDates(Context ctx) {
@@ -49,9 +68,87 @@ public class CarparkController {
         ctx.json(new ApiResponse<>(service.getParkingStats()));
     }
 
-    public void handleGetAllSpacesData(Context ctx) {
-        JsonArray data = service.getAllSpacesData();
-        ctx.result(compactGson.toJson(new ApiResponse<>(data)));
-        ctx.contentType("application/json");
+    /**
+     * Returns a carpark's space counts between two dates, either aggregated into
+     * fixed buckets (?bucket=5m|1h|1d&agg=min|max|avg) or, with ?mode=lttb, the raw
+     * readings downsampled to at most ?points points. Defaults to today in hourly averages.
+     */
+    public void handleGetHistory(Context ctx) throws Exception {
+        String code = service.resolveLiveTrackingCode(ctx.pathParam("code"));
+        if (code == null) {
+            throw new HttpException(ErrorType.NOT_FOUND, 404, "Carpark not found");
+        }
+
+        Timestamp from = parseDateBound(ctx.queryParam("from"), "from", false);
+        Timestamp to = parseDateBound(ctx.queryParam("to"), "to", true);
+        if (to == null) {
+            to = Timestamp.valueOf(LocalDate.now().plusDays(1).atStartOfDay());
+        }
+        if (from == null) {
+            from = Timestamp.valueOf(to.toLocalDateTime().minusDays(1));
+        }
+        if (!from.before(to)) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "from must be before to");
+        }
+
+        String mode = ctx.queryParam("mode");
+        ZoneId zone = ZoneId.systemDefault();
+
+        if ("lttb".equalsIgnoreCase(mode)) {
+            String pointsParam = ctx.queryParam("points");
+            Integer points = pointsParam == null ? DEFAULT_HISTORY_POINTS : Utils.parseInteger(pointsParam);
+            if (points == null || points < 3 || points > MAX_HISTORY_POINTS) {
+                throw new HttpException(ErrorType.INVALID_REQUEST, 400, "points must be between 3 and " + MAX_HISTORY_POINTS);
+            }
+
+            OccupancySeries series = service.getOccupancy(code, from, to);
+            ctx.json(new ApiResponse<>(new CarparkHistoryResponse(code, from, to, "lttb", null, null, series.lttb(points))));
+            return;
+        }
+        if (mode != null && !mode.isEmpty() && !mode.equalsIgnoreCase("bucket")) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid mode, expected bucket or lttb");
+        }
+
+        OccupancySeries.Bucket bucket = OccupancySeries.Bucket.fromParam(ctx.queryParam("bucket"));
+        OccupancySeries.Aggregation agg = OccupancySeries.Aggregation.fromParam(ctx.queryParam("agg"));
+
+        long buckets = (to.getTime() - from.getTime()) / 1000 / bucket.getSeconds();
+        if (buckets > MAX_HISTORY_POINTS) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Range too large for a " + bucket.getParam() + " bucket, use a larger bucket");
+        }
+
+        OccupancySeries series = service.getOccupancy(code, from, to);
+        ctx.json(new ApiResponse<>(new CarparkHistoryResponse(
+                code, from, to, "bucket", bucket.getParam(), agg.name().toLowerCase(), series.bucketed(bucket, agg, zone)
+        )));
+    }
+
+    public void handleGetAllSpacesData(Context ctx) throws Exception {
+        SpacesExportWriter.Format format = SpacesExportWriter.Format.fromParam(ctx.queryParam("format"));
+        Timestamp from = parseDateBound(ctx.queryParam("from"), "from", false);
+        Timestamp to = parseDateBound(ctx.queryParam("to"), "to", true);
+
+        ctx.contentType(format.getContentType());
+
+        // Rows are written as they are read, so the response is sent chunked
+        SpacesExportWriter writer = new SpacesExportWriter(format, ctx.outputStream());
+        writer.begin();
+        service.streamAllSpacesData(from, to, writer);
+        writer.end();
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date. Upper bounds include the whole day.
+     */
+    private static Timestamp parseDateBound(String value, String name, boolean upper) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            LocalDate date = LocalDate.parse(value);
+            return Timestamp.valueOf((upper ? date.plusDays(1) : date).atStartOfDay());
+        } catch (DateTimeParseException ex) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid " + name + " date, expected YYYY-MM-DD");
+        }
     }
 }
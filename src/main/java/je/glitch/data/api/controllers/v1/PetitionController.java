@@ -5,6 +5,7 @@ import je.glitch.data.api.database.MySQLConnection;
 import je.glitch.data.api.models.ApiResponse;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
 import lombok.RequiredArgsConstructor;
 
 import java.sql.SQLException;
@@ -14,7 +15,7 @@ public class PetitionController {
     private final MySQLConnection connection;
 
     public void handleGetPetitions(Context ctx) {
-        ctx.json(connection.getPetitionTable().getPetitions(ctx));
+        StreamingJsonMapper.stream(ctx, connection.getPetitionTable().getPetitions(ctx));
     }
 
     public void handleGetPetitionStats(Context ctx) {
@@ -1,54 +1,77 @@
 package je.glitch.data.api.controllers.v1;
 
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
 import je.glitch.data.api.cache.RedisCache;
 import je.glitch.data.api.database.MySQLConnection;
-import je.glitch.data.api.models.ApiResponse;
 import lombok.RequiredArgsConstructor;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 @RequiredArgsConstructor
 public class SimpleEndpointController {
+    private static final byte[] RESULTS_PREFIX = "{\"results\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESULTS_SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NULL_RESULTS = "null".getBytes(StandardCharsets.UTF_8);
+
     private final MySQLConnection connection;
     private final RedisCache cache;
 
-    public void handleGetEatsafe(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getEatSafeData()));
+    public void handleGetEatsafe(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.EATSAFE_KEY);
     }
 
-    public void handleGetToilets(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getToiletData()));
+    public void handleGetToilets(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.TOILETS_KEY);
     }
 
-    public void handleGetRecycling(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getRecyclingData()));
+    public void handleGetRecycling(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.RECYCLING_KEY);
     }
 
-    public void handleGetDefibrillators(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getDefibrillatorData()));
+    public void handleGetDefibrillators(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.DEFIBRILLATORS_KEY);
     }
 
-    public void handleGetBusPassengersChart(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getBusPassengersChartData()));
+    public void handleGetBusPassengersChart(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.BUS_PASSENGERS_KEY);
     }
 
-    public void handleGetRoadTrafficChart(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getRoadTrafficChartData()));
+    public void handleGetRoadTrafficChart(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.ROAD_TRAFFIC_KEY);
     }
 
-    public void handleGetDrivingResultsChart(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getDrivingTestResultsChartData()));
+    public void handleGetDrivingResultsChart(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.DRIVING_TEST_RESULTS_KEY);
     }
 
-    public void handleGetMonthlyRainfallChart(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getMonthlyRainfallData()));
+    public void handleGetMonthlyRainfallChart(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.MONTHLY_RAINFALL_KEY);
     }
 
-    public void handleGetRegisteredVehiclesChart(Context ctx) {
-        ctx.json(new ApiResponse<>(cache.getRegisteredVehiclesChartData()));
+    public void handleGetRegisteredVehiclesChart(Context ctx) throws IOException {
+        passthrough(ctx, RedisCache.REGISTERED_VEHICLES_KEY);
     }
 
     public void handleGetFetcherHeartbeat(Context ctx) {
         boolean alive = cache.checkFetcherHeartbeat();
         ctx.status(alive ? 200 : 503);
     }
+
+    /**
+     * Writes the raw redis value wrapped in the usual {"results": ...} envelope
+     * without building a json tree. The fetcher already stores valid json, so
+     * there is nothing to gain from parsing it on every request.
+     */
+    private void passthrough(Context ctx, String key) throws IOException {
+        byte[] raw = cache.getRawData(key);
+
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        OutputStream out = ctx.outputStream();
+        out.write(RESULTS_PREFIX);
+        out.write(raw != null ? raw : NULL_RESULTS);
+        out.write(RESULTS_SUFFIX);
+    }
 }
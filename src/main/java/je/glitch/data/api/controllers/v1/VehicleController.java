@@ -3,24 +3,28 @@ package je.glitch.data.api.controllers.v1;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import io.javalin.http.Context;
 import je.glitch.data.api.models.ApiResponse;
 import je.glitch.data.api.models.Vehicle;
+import je.glitch.data.api.services.PlateLookupQueue;
 import je.glitch.data.api.services.VehicleService;
 import je.glitch.data.api.utils.ErrorResponse;
 import je.glitch.data.api.utils.ErrorType;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RequiredArgsConstructor
 public class VehicleController {
     private static final Gson compactGson = new GsonBuilder().create();
+    private static final int MAX_JOB_WAIT_SECONDS = 30;
+    private static final int MAX_SUGGESTIONS = 50;
     private final VehicleService service;
 
     public void handleGetVehicles(Context ctx) {
@@ -47,19 +51,82 @@ public class VehicleController {
         ctx.json(stats);
     }
 
+    public void handleSuggestMakes(Context ctx) {
+        ctx.json(new ApiResponse<>(service.suggestMakes(suggestQuery(ctx), suggestLimit(ctx))));
+    }
+
+    public void handleSuggestModels(Context ctx) {
+        ctx.json(new ApiResponse<>(service.suggestModels(suggestQuery(ctx), suggestLimit(ctx))));
+    }
+
+    private static String suggestQuery(Context ctx) {
+        String query = ctx.queryParam("q");
+        return query != null ? query : "";
+    }
+
+    private static int suggestLimit(Context ctx) {
+        int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(10);
+        return Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
     public void handleGetPlate(Context ctx) {
-        try {
-            String plate = ctx.pathParam("plate");
-            JsonObject vehicleData = service.getPlate(plate);
-
-            if (vehicleData == null) {
-                ctx.status(400).json(new ErrorResponse(ErrorType.INVALID_REQUEST, "Invalid plate"));
-                return;
-            }
-            ctx.json(new ApiResponse<>(vehicleData));
-        } catch (Exception ex) {
-            log.error("An error occurred while fetching plate information", ex);
-            ctx.status(500).json(new ErrorResponse(ErrorType.SERVER_ERROR, "An error has occurred"));
+        PlateLookupQueue.Job job = submitPlateLookup(ctx);
+        if (job == null) {
+            return;
+        }
+
+        // The lookup carries on in the background if the caller gives up waiting
+        ctx.future(() -> job.getDone().copy()
+                .completeOnTimeout(null, MAX_JOB_WAIT_SECONDS, TimeUnit.SECONDS)
+                .thenAccept(done -> {
+                    if (done == null) {
+                        StreamingJsonMapper.stream(ctx.status(503), new ErrorResponse(ErrorType.SERVER_ERROR, "Plate lookup timed out, try again shortly"));
+                        return;
+                    }
+
+                    switch (done.getStatus()) {
+                        case FOUND -> StreamingJsonMapper.stream(ctx, new ApiResponse<>(done.getResult()));
+                        case NOT_FOUND -> StreamingJsonMapper.stream(ctx.status(400), new ErrorResponse(ErrorType.INVALID_REQUEST, "Invalid plate"));
+                        default -> StreamingJsonMapper.stream(ctx.status(500), new ErrorResponse(ErrorType.SERVER_ERROR, "An error has occurred"));
+                    }
+                }));
+    }
+
+    public void handleCreatePlateJob(Context ctx) {
+        PlateLookupQueue.Job job = submitPlateLookup(ctx);
+        if (job == null) {
+            return;
+        }
+        ctx.status(202).json(new ApiResponse<>(job.toResponse()));
+    }
+
+    /**
+     * Returns the job straight away, or with {@code wait} set, once it has finished
+     * or after that many seconds, whichever comes first.
+     */
+    public void handleGetPlateJob(Context ctx) {
+        PlateLookupQueue.Job job = service.getPlateLookup(ctx.pathParam("id"));
+        if (job == null) {
+            ctx.status(404).json(new ErrorResponse(ErrorType.NOT_FOUND, "Job not found"));
+            return;
+        }
+
+        int wait = Math.min(ctx.queryParamAsClass("wait", Integer.class).getOrDefault(0), MAX_JOB_WAIT_SECONDS);
+        if (wait <= 0 || job.isFinished()) {
+            ctx.json(new ApiResponse<>(job.toResponse()));
+            return;
+        }
+
+        ctx.future(() -> job.getDone().copy()
+                .completeOnTimeout(job, wait, TimeUnit.SECONDS)
+                .thenAccept(current -> StreamingJsonMapper.stream(ctx, new ApiResponse<>(current.toResponse()))));
+    }
+
+    private PlateLookupQueue.Job submitPlateLookup(Context ctx) {
+        PlateLookupQueue.Job job = service.submitPlateLookup(ctx.pathParam("plate"));
+        if (job == null) {
+            ctx.status(503).json(new ErrorResponse(ErrorType.SERVER_ERROR, "Too many plate lookups are queued, try again shortly"));
         }
+        return job;
     }
 }
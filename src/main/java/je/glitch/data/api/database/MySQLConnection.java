@@ -2,6 +2,7 @@ package je.glitch.data.api.database;
 
 import com.zaxxer.hikari.HikariDataSource;
 import je.glitch.data.api.Config;
+import je.glitch.data.api.cache.ApiKeyResolver;
 import je.glitch.data.api.database.tables.*;
 import lombok.Getter;
 
@@ -12,6 +13,7 @@ public class MySQLConnection {
     private final VehicleTable vehicleTable;
     private final BusTable busTable;
     private final ApiKeyTable apiKeyTable;
+    private final ApiKeyResolver apiKeyResolver;
     private final UserTable userTable;
     private final LogTable logTable;
     private final FoiTable foiTable;
@@ -25,7 +27,9 @@ public class MySQLConnection {
         this.vehicleTable = new VehicleTable(dataSource);
         this.busTable = new BusTable(dataSource);
         this.apiKeyTable = new ApiKeyTable(dataSource);
-        this.userTable = new UserTable(dataSource);
+        this.apiKeyResolver = new ApiKeyResolver(apiKeyTable);
+        this.apiKeyTable.setResolver(apiKeyResolver);
+        this.userTable = new UserTable(dataSource, apiKeyTable);
         this.logTable = new LogTable(dataSource);
         this.foiTable = new FoiTable(dataSource);
         this.courtTable = new CourtTable(dataSource);
@@ -38,5 +42,7 @@ public class MySQLConnection {
         dataSource.setUsername("root");
         dataSource.setPassword(Config.getMysqlPassword());
         dataSource.setMaxLifetime(1800000);
+        // Lets the driver collapse batched inserts (e.g. request logging) into multi-row statements
+        dataSource.addDataSourceProperty("rewriteBatchedStatements", "true");
     }
 }
@@ -1,18 +1,26 @@
 package je.glitch.data.api.database.tables;
 
 import com.zaxxer.hikari.HikariDataSource;
+import je.glitch.data.api.cache.ApiKeyResolver;
 import je.glitch.data.api.models.ApiToken;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 public class ApiKeyTable implements ITable {
     private final HikariDataSource dataSource;
+    @Getter
+    @Setter
+    private ApiKeyResolver resolver;
 
     /**
      * Returns all API tokens in the database.
@@ -84,13 +92,41 @@ public class ApiKeyTable implements ITable {
             stmt.setString(3, token.getToken());
             stmt.setString(4, token.getSummary());
 
-            return stmt.executeUpdate() > 0;
+            boolean created = stmt.executeUpdate() > 0;
+            if (created && resolver != null) {
+                resolver.onTokenCreated(token.getToken(), token.getId());
+            }
+            return created;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             return false;
         }
     }
 
+    /**
+     * Returns every token mapped to its id, used to warm the {@link ApiKeyResolver}.
+     * @return the tokens, or null if they could not be loaded
+     */
+    public Map<String, String> getTokenIds() {
+        String sql = "SELECT id, token FROM apiTokens";
+
+        try (Connection connection = dataSource.getConnection(); PreparedStatement stmt = connection.prepareStatement(sql)) {
+            try (ResultSet result = stmt.executeQuery()) {
+                Map<String, String> tokens = new HashMap<>();
+                while (result.next()) {
+                    tokens.put(result.getString("token"), result.getString("id"));
+                }
+                return tokens;
+            }
+        } catch (Exception ex) {
+            System.out.println(ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Looks up a token id directly in the database. Use {@link ApiKeyResolver} instead.
+     */
     public String getIdFromKey(String key) {
         String sql = "SELECT id FROM apiTokens WHERE token = ?";
 
@@ -120,7 +156,11 @@ public class ApiKeyTable implements ITable {
              PreparedStatement stmt = connection.prepareStatement(sql)) {
 
             stmt.setString(1, tokenId);
-            return stmt.executeUpdate() > 0;
+            boolean deleted = stmt.executeUpdate() > 0;
+            if (deleted && resolver != null) {
+                resolver.onTokenDeleted(tokenId);
+            }
+            return deleted;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             return false;
@@ -1,18 +1,18 @@
 package je.glitch.data.api.database.tables;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import com.zaxxer.hikari.HikariDataSource;
 import je.glitch.data.api.models.Carpark;
 import je.glitch.data.api.models.LiveParkingSpace;
-import je.glitch.data.api.models.carpark.BusiestCarpark;
-import je.glitch.data.api.models.carpark.CarparkAvailability;
-import je.glitch.data.api.models.carpark.CarparkFullDay;
+import je.glitch.data.api.models.carpark.CarparkStatsBucket;
 import lombok.RequiredArgsConstructor;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -106,10 +106,13 @@ public class CarparkTable implements ITable {
         }
     }
 
-    public List<LiveParkingSpace> getLiveSpacesForDate(String date) {
+    public List<LiveParkingSpace> getLiveSpacesForDate(LocalDate date) {
+        DateRange range = DateRange.ofDay(date);
+        String sql = "SELECT * FROM liveParkingSpaces WHERE " + range.condition("createdAt") + " ORDER BY createdAt DESC";
+
         try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement stmt = connection.prepareStatement("SELECT * FROM liveParkingSpaces WHERE DATE(createdAt) = ? ORDER BY createdAt DESC");
-            stmt.setString(1, date);
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            range.bind(stmt, 1);
 
             try (ResultSet result = stmt.executeQuery()) {
                 List<LiveParkingSpace> spaces = new ArrayList<>();
@@ -124,182 +127,203 @@ public class CarparkTable implements ITable {
         }
     }
 
-    public JsonArray getAllSpacesData() {
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement stmt = connection.prepareStatement(
-                    "SELECT name, createdAt, spaces, status, open FROM liveParkingSpaces ORDER BY createdAt DESC"
-            );
+    /**
+     * Streams rows of liveParkingSpaces to a consumer, newest first, without holding
+     * the result set in memory. The driver fetches rows one at a time from a
+     * forward-only cursor, so the connection is held until the export finishes.
+     *
+     * @param range the range of createdAt to export
+     * @param consumer receives each row
+     */
+    public void streamSpacesData(DateRange range, SpaceRowConsumer consumer) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder("SELECT name, createdAt, spaces, status, open FROM liveParkingSpaces");
 
-            try (ResultSet result = stmt.executeQuery()) {
-                JsonArray array = new JsonArray();
+        if (range.isBounded()) {
+            sql.append(" WHERE ").append(range.condition("createdAt"));
+        }
+        sql.append(" ORDER BY createdAt DESC");
 
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            // Tells Connector/J to stream rows instead of buffering the whole result
+            stmt.setFetchSize(Integer.MIN_VALUE);
+
+            range.bind(stmt, 1);
+
+            try (ResultSet result = stmt.executeQuery()) {
                 while (result.next()) {
-                    JsonArray row = new JsonArray();
-                    row.add(result.getString("createdAt"));
-                    row.add(result.getString("name"));
-                    row.add(result.getInt("spaces"));
-                    row.add(result.getString("status"));
-                    row.add(result.getBoolean("open"));
-
-                    array.add(row);
+                    consumer.accept(
+                            result.getString("createdAt"),
+                            result.getString("name"),
+                            result.getInt("spaces"),
+                            result.getString("status"),
+                            result.getBoolean("open")
+                    );
                 }
-                return array;
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return new JsonArray();
         }
     }
 
-    public List<String> getLiveSpacesDates() {
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement stmt = connection.prepareStatement("SELECT DISTINCT DATE_FORMAT(createdAt, '%Y-%m-%d') AS date FROM liveParkingSpaces ORDER BY date DESC");
+    /**
+     * Streams every row of liveParkingSpaces with an id above {@code afterId}, in id
+     * order. Like {@link #streamSpacesData}, rows are not buffered by the driver.
+     */
+    public void streamSpacesAfter(long afterId, SpaceRecordConsumer consumer) throws SQLException {
+        String sql = "SELECT id, createdAt, name, code, spaces, status, open FROM liveParkingSpaces WHERE id > ? ORDER BY id";
 
-            try (ResultSet result = stmt.executeQuery()) {
-                List<String> dates = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setLong(1, afterId);
 
+            try (ResultSet result = stmt.executeQuery()) {
                 while (result.next()) {
-                    dates.add(result.getString("date"));
+                    consumer.accept(
+                            result.getInt("id"),
+                            result.getTimestamp("createdAt"),
+                            result.getString("name"),
+                            result.getString("code"),
+                            result.getInt("spaces"),
+                            result.getString("status"),
+                            result.getBoolean("open")
+                    );
                 }
-                return dates;
             }
-        } catch (Exception ex) {
-            return new ArrayList<>();
         }
     }
 
-    public List<BusiestCarpark> getBusiestCarparks() {
-        String sql = """
-        SELECT 
-            name,
-            code,
-            COUNT(*) AS timesFull
-        FROM liveParkingSpaces
-        WHERE spaces = 0 OR status = 'FULL'
-        GROUP BY name, code
-        ORDER BY timesFull DESC
-        """;
+    /**
+     * Streams the space counts for one carpark within a range, oldest first.
+     */
+    public void streamCarparkSpaces(String code, DateRange range, CarparkSpacesConsumer consumer) throws SQLException {
+        String sql = "SELECT createdAt, spaces FROM liveParkingSpaces WHERE code = ? AND " + range.condition("createdAt") + " ORDER BY createdAt";
 
         try (Connection connection = dataSource.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
 
-            List<BusiestCarpark> list = new ArrayList<>();
-            while (rs.next()) {
-                list.add(new BusiestCarpark(
-                        rs.getString("name"),
-                        rs.getString("code"),
-                        rs.getInt("timesFull")
-                ));
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setString(1, code);
+            range.bind(stmt, 2);
+
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    consumer.accept(result.getTimestamp("createdAt").getTime() / 1000, result.getInt("spaces"));
+                }
             }
-            return list;
-        } catch (Exception ex) {
-            System.out.println(ex.getMessage());
-            return new ArrayList<>();
         }
     }
 
-    public List<CarparkFullDay> getMostCommonFullDays() {
-        String sql = """
-        SELECT 
-            name,
-            code,
-            DAYNAME(createdAt) AS dayOfWeek,
-            COUNT(*) AS fullCount
-        FROM liveParkingSpaces
-        WHERE spaces = 0 OR status = 'FULL'
-        GROUP BY name, code, dayOfWeek
-        ORDER BY name, fullCount DESC
-        """;
+    /**
+     * Returns the distinct days that have live space readings within a range.
+     *
+     * @return the days, or null if the query failed
+     */
+    public List<LocalDate> getLiveSpacesDates(DateRange range) {
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT DATE(createdAt) AS date FROM liveParkingSpaces");
+        if (range.isBounded()) {
+            sql.append(" WHERE ").append(range.condition("createdAt"));
+        }
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement stmt = connection.prepareStatement(sql.toString());
+            range.bind(stmt, 1);
 
-            List<CarparkFullDay> list = new ArrayList<>();
-            while (rs.next()) {
-                list.add(new CarparkFullDay(
-                        rs.getString("name"),
-                        rs.getString("code"),
-                        rs.getString("dayOfWeek"),
-                        rs.getInt("fullCount")
-                ));
+            try (ResultSet result = stmt.executeQuery()) {
+                List<LocalDate> dates = new ArrayList<>();
+
+                while (result.next()) {
+                    dates.add(result.getDate("date").toLocalDate());
+                }
+                return dates;
             }
-            return list;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
-            return new ArrayList<>();
+            return null;
         }
     }
 
-    public List<CarparkAvailability> getAvailabilityLastYear() {
-        String sql = """
-        SELECT 
-            name,
-            code,
-            YEAR(createdAt) AS year,
-            MONTH(createdAt) AS month,
-            ROUND(100.0 * SUM(CASE WHEN spaces > 0 THEN 1 ELSE 0 END) / COUNT(*), 2) AS availabilityPercentage
-        FROM liveParkingSpaces
-        WHERE YEAR(createdAt) = YEAR(CURDATE()) - 1
-        GROUP BY name, code, year, month
-        ORDER BY name, year, month
-        """;
+    /**
+     * Returns the id of the newest live space reading, or 0 if there are none.
+     */
+    public long getLatestSpaceId() {
+        String sql = "SELECT COALESCE(MAX(id), 0) AS latestId FROM liveParkingSpaces";
 
         try (Connection connection = dataSource.getConnection();
              PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
-            List<CarparkAvailability> list = new ArrayList<>();
-            while (rs.next()) {
-                list.add(new CarparkAvailability(
-                        rs.getString("name"),
-                        rs.getString("code"),
-                        rs.getInt("year"),
-                        rs.getInt("month"),
-                        rs.getDouble("availabilityPercentage")
-                ));
-            }
-            return list;
+            return rs.next() ? rs.getLong("latestId") : 0;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
-            return new ArrayList<>();
+            return -1;
         }
     }
 
-    public List<CarparkAvailability> getAvailabilityThisYear() {
+    /**
+     * Aggregates the live space readings with an id in (afterId, upToId] into buckets
+     * per carpark, month and day of the week. Filtering on the primary key means only
+     * the new rows are read.
+     *
+     * @return the buckets, or null if the query failed
+     */
+    public List<CarparkStatsBucket> getStatsBuckets(long afterId, long upToId) {
         String sql = """
-        SELECT 
+        SELECT
             name,
             code,
             YEAR(createdAt) AS year,
             MONTH(createdAt) AS month,
-            ROUND(100.0 * SUM(CASE WHEN spaces > 0 THEN 1 ELSE 0 END) / COUNT(*), 2) AS availabilityPercentage
+            DAYNAME(createdAt) AS dayOfWeek,
+            SUM(CASE WHEN spaces = 0 OR status = 'FULL' THEN 1 ELSE 0 END) AS fullCount,
+            SUM(CASE WHEN spaces > 0 THEN 1 ELSE 0 END) AS availableCount,
+            COUNT(*) AS total
         FROM liveParkingSpaces
-        WHERE YEAR(createdAt) = YEAR(CURDATE())
-        GROUP BY name, code, year, month
-        ORDER BY name, year, month
+        WHERE id > ? AND id <= ?
+        GROUP BY name, code, year, month, dayOfWeek
         """;
 
         try (Connection connection = dataSource.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-
-            List<CarparkAvailability> list = new ArrayList<>();
-            while (rs.next()) {
-                list.add(new CarparkAvailability(
-                        rs.getString("name"),
-                        rs.getString("code"),
-                        rs.getInt("year"),
-                        rs.getInt("month"),
-                        rs.getDouble("availabilityPercentage")
-                ));
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+
+            stmt.setLong(1, afterId);
+            stmt.setLong(2, upToId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<CarparkStatsBucket> list = new ArrayList<>();
+                while (rs.next()) {
+                    list.add(new CarparkStatsBucket(
+                            rs.getString("name"),
+                            rs.getString("code"),
+                            rs.getInt("year"),
+                            rs.getInt("month"),
+                            rs.getString("dayOfWeek"),
+                            rs.getLong("fullCount"),
+                            rs.getLong("availableCount"),
+                            rs.getLong("total")
+                    ));
+                }
+                return list;
             }
-            return list;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
-            return new ArrayList<>();
+            return null;
         }
     }
 
+    @FunctionalInterface
+    public interface SpaceRowConsumer {
+        void accept(String createdAt, String name, int spaces, String status, boolean open) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface CarparkSpacesConsumer {
+        void accept(long epochSeconds, int spaces);
+    }
+
+    @FunctionalInterface
+    public interface SpaceRecordConsumer {
+        void accept(int id, Timestamp createdAt, String name, String code, int spaces, String status, boolean open);
+    }
 }
@@ -2,6 +2,9 @@ package je.glitch.data.api.database.tables;
 
 import com.zaxxer.hikari.HikariDataSource;
 import io.javalin.http.Context;
+import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.Pagination;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
 import lombok.RequiredArgsConstructor;
 
 import java.sql.*;
@@ -12,8 +15,8 @@ public class CourtTable {
     private final HikariDataSource dataSource;
 
     public void getMagistratesHearings(Context ctx) {
-        int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
-        int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(50);
+        int page = Pagination.page(ctx);
+        int limit = Pagination.limit(ctx, 50);
 
         List<Object> params = new ArrayList<>();
         StringBuilder query = new StringBuilder("FROM magistratesCourtHearings");
@@ -27,30 +30,52 @@ public class CourtTable {
         int offset = (page - 1) * limit;
 
         try (Connection conn = dataSource.getConnection()) {
-            int totalItems = fetchSingleInt(conn, "SELECT COUNT(*) " + query, params);
-            int totalPages = (int) Math.ceil((double) totalItems / limit);
+            Integer totalItems = Pagination.isCountRequested(ctx)
+                    ? fetchSingleInt(conn, "SELECT COUNT(*) " + query, params)
+                    : null;
 
-            List<Map<String, Object>> results = fetchRows(conn,
-                    "SELECT * " + query + " ORDER BY appearanceDate DESC LIMIT ? OFFSET ?",
-                    params, limit, offset);
+            List<Map<String, Object>> results;
+            Map<String, Object> pagination;
 
-            ctx.json(Map.of(
-                    "pagination", Map.of(
-                            "page", page,
-                            "limit", limit,
-                            "totalPages", totalPages,
-                            "totalItems", totalItems
-                    ),
+            if (Pagination.isCursorRequested(ctx)) {
+                List<String> after = Pagination.decodeCursor(ctx, 2);
+                if (after != null) {
+                    addSeekAfter(query, params, after.get(0), Pagination.parseCursorId(after.get(1)));
+                }
+
+                // appearanceDate is nullable, nulls sort last when descending
+                results = fetchRows(conn,
+                        "SELECT * " + query + " ORDER BY appearanceDate DESC, id DESC LIMIT ? OFFSET ?",
+                        params, limit + 1, 0);
+
+                String nextCursor = null;
+                if (results.size() > limit) {
+                    results = results.subList(0, limit);
+                    Map<String, Object> last = results.get(limit - 1);
+                    nextCursor = Pagination.encodeCursor(last.get("appearanceDate"), last.get("id"));
+                }
+                pagination = Pagination.cursorPagination(limit, nextCursor, totalItems);
+            } else {
+                results = fetchRows(conn,
+                        "SELECT * " + query + " ORDER BY appearanceDate DESC, id DESC LIMIT ? OFFSET ?",
+                        params, limit, offset);
+                pagination = Pagination.offsetPagination(page, limit, totalItems);
+            }
+
+            StreamingJsonMapper.stream(ctx, Map.of(
+                    "pagination", pagination,
                     "results", results
             ));
+        } catch (HttpException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new RuntimeException("Error fetching hearings: " + ex.getMessage(), ex);
         }
     }
 
     public void getMagistratesResults(Context ctx) {
-        int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
-        int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(50);
+        int page = Pagination.page(ctx);
+        int limit = Pagination.limit(ctx, 50);
 
         List<Object> params = new ArrayList<>();
         StringBuilder query = new StringBuilder("FROM magistratesCourtResults");
@@ -110,7 +135,7 @@ public class CourtTable {
                 }
             }
 
-            ctx.json(Map.of(
+            StreamingJsonMapper.stream(ctx, Map.of(
                     "pagination", Map.of(
                             "page", page,
                             "limit", limit,
@@ -146,6 +171,20 @@ public class CourtTable {
     }
 
     // Helper methods
+    private static void addSeekAfter(StringBuilder query, List<Object> params, String appearanceDate, long id) {
+        query.append(query.toString().contains("WHERE") ? " AND " : " WHERE ");
+
+        if (appearanceDate == null) {
+            query.append("(appearanceDate IS NULL AND id < ?)");
+            params.add(id);
+        } else {
+            query.append("(appearanceDate < ? OR appearanceDate IS NULL OR (appearanceDate = ? AND id < ?))");
+            params.add(appearanceDate);
+            params.add(appearanceDate);
+            params.add(id);
+        }
+    }
+
     private static void addFilter(StringBuilder query, List<Object> params, String condition, String value) {
         if (value != null && !value.isEmpty()) {
             query.append(query.toString().contains("WHERE") ? " AND " : " WHERE ").append(condition);
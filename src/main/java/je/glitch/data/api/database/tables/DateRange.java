@@ -0,0 +1,74 @@
+package je.glitch.data.api.database.tables;
+
+import lombok.Data;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A half-open [from, to) range on a timestamp column. Either end may be open.
+ *
+ * Comparing the raw column against bounds, instead of wrapping it in DATE() or
+ * YEAR(), lets MySQL use an index on it rather than scanning every row.
+ */
+@Data
+public class DateRange {
+    private final Timestamp from;
+    private final Timestamp to;
+
+    public static DateRange ofDay(LocalDate day) {
+        return new DateRange(startOf(day), startOf(day.plusDays(1)));
+    }
+
+    public static DateRange ofMonth(int year, int month) {
+        LocalDate start = LocalDate.of(year, month, 1);
+        return new DateRange(startOf(start), startOf(start.plusMonths(1)));
+    }
+
+    public static DateRange since(LocalDate day) {
+        return new DateRange(startOf(day), null);
+    }
+
+    public boolean isBounded() {
+        return from != null || to != null;
+    }
+
+    /**
+     * Returns the condition on a column, e.g. "createdAt >= ? AND createdAt < ?", or
+     * an empty string when the range is unbounded.
+     */
+    public String condition(String column) {
+        List<String> parts = new ArrayList<>();
+        if (from != null) {
+            parts.add(column + " >= ?");
+        }
+        if (to != null) {
+            parts.add(column + " < ?");
+        }
+        return String.join(" AND ", parts);
+    }
+
+    /**
+     * Sets the parameters for {@link #condition(String)}.
+     *
+     * @param index the index of the first parameter
+     * @return the index of the next parameter
+     */
+    public int bind(PreparedStatement stmt, int index) throws SQLException {
+        if (from != null) {
+            stmt.setTimestamp(index++, from);
+        }
+        if (to != null) {
+            stmt.setTimestamp(index++, to);
+        }
+        return index;
+    }
+
+    private static Timestamp startOf(LocalDate day) {
+        return Timestamp.valueOf(day.atStartOfDay());
+    }
+}
@@ -5,7 +5,9 @@ import io.javalin.http.Context;
 import je.glitch.data.api.modelsnew.entities.FoiRequestEntity;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.Pagination;
 import je.glitch.data.api.utils.Utils;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
 import lombok.RequiredArgsConstructor;
 
 import java.sql.*;
@@ -55,23 +57,47 @@ public class FoiTable implements ITable {
             addFilter(query, params, "requestText LIKE ?", ctx.queryParam("requestText"));
             addFilter(query, params, "responseText LIKE ?", ctx.queryParam("responseText"));
 
-            int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
-            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(includeText ? 30 : 60);
+            int page = Pagination.page(ctx);
+            int limit = Pagination.limit(ctx, includeText ? 30 : 60);
             int offset = (page - 1) * limit;
 
-            int totalItems = fetchSingleInt(connection, "SELECT COUNT(*) " + query, params);
-            int totalPages = (int) Math.ceil((double) totalItems / limit);
+            Integer totalItems = Pagination.isCountRequested(ctx)
+                    ? fetchSingleInt(connection, "SELECT COUNT(*) " + query, params)
+                    : null;
 
             String selectColumns = includeText ? "*" : "id, publishDate, title, producer, author";
 
-            List<Map<String, Object>> requests = fetchRows(connection,
-                    "SELECT " + selectColumns + " " + query + " ORDER BY id DESC LIMIT ? OFFSET ?", params, limit, offset);
+            List<Map<String, Object>> requests;
+            Map<String, Object> pagination;
 
-            ctx.json(Map.of(
-                    "pagination", Map.of("page", page, "limit", limit, "totalPages", totalPages, "totalItems", totalItems),
+            if (Pagination.isCursorRequested(ctx)) {
+                List<String> after = Pagination.decodeCursor(ctx, 1);
+                if (after != null) {
+                    addFilter(query, params, "id < ?", String.valueOf(Pagination.parseCursorId(after.get(0))));
+                }
+
+                requests = fetchRows(connection,
+                        "SELECT " + selectColumns + " " + query + " ORDER BY id DESC LIMIT ? OFFSET ?", params, limit + 1, 0);
+
+                String nextCursor = null;
+                if (requests.size() > limit) {
+                    requests = requests.subList(0, limit);
+                    nextCursor = Pagination.encodeCursor(requests.get(limit - 1).get("id"));
+                }
+                pagination = Pagination.cursorPagination(limit, nextCursor, totalItems);
+            } else {
+                requests = fetchRows(connection,
+                        "SELECT " + selectColumns + " " + query + " ORDER BY id DESC LIMIT ? OFFSET ?", params, limit, offset);
+                pagination = Pagination.offsetPagination(page, limit, totalItems);
+            }
+
+            StreamingJsonMapper.stream(ctx, Map.of(
+                    "pagination", pagination,
                     "results", requests
             ));
             return new ArrayList<>();
+        } catch (HttpException ex) {
+            throw ex;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             throw new HttpException(ErrorType.SERVER_ERROR, 500, ex.getMessage());
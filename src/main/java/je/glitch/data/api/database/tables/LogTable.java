@@ -1,59 +1,136 @@
 package je.glitch.data.api.database.tables;
 
 import com.zaxxer.hikari.HikariDataSource;
+import je.glitch.data.api.modelsnew.entities.ApiRequestEntity;
 import je.glitch.data.api.modelsnew.entities.ApiRequestStatsEntity;
 import je.glitch.data.api.modelsnew.entities.DailyRequestStatEntity;
 import je.glitch.data.api.modelsnew.entities.EndpointRequestStatEntity;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RequiredArgsConstructor
 public class LogTable implements ITable {
+    // Column widths in apiRequests and apiRequestsHourly
+    private static final int METHOD_LENGTH = 10;
+    private static final int PATH_LENGTH = 200;
+    private static final int IP_ADDRESS_LENGTH = 45;
+    private static final int USER_AGENT_LENGTH = 255;
+
     private final HikariDataSource dataSource;
 
-    public boolean trackRequest(String method, String path, int statusCode, String ipAddress, String userAgent, String apiTokenId) {
+    /**
+     * Inserts a batch of tracked requests in a single round trip, and adds them to
+     * the hourly rollup in the same transaction so the two tables never drift.
+     * Client supplied values are cut to their column width, so one oversized request
+     * cannot fail the whole batch.
+     * @param requests the requests to insert
+     * @return true if the batch was written
+     */
+    public boolean trackRequests(List<ApiRequestEntity> requests) {
+        if (requests.isEmpty()) {
+            return true;
+        }
+
         String sql = """
-                INSERT INTO apiRequests (id, method, path, statusCode, ipAddress, userAgent, apiTokenId)
-                VALUES (?, ?, ?, ?, ?, ?, ?)
+                INSERT INTO apiRequests (id, createdAt, method, path, statusCode, ipAddress, userAgent, apiTokenId)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
                 """;
 
-        String id = UUID.randomUUID().toString();
+        String rollupSql = """
+                INSERT INTO apiRequestsHourly (hour, path, statusCode, authenticated, total)
+                VALUES (?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE total = total + VALUES(total)
+                """;
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Map<HourlyKey, Long> hourly = new HashMap<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement stmt = connection.prepareStatement(sql);
+                 PreparedStatement rollupStmt = connection.prepareStatement(rollupSql)) {
+
+                for (ApiRequestEntity request : requests) {
+                    String path = truncate(request.getPath(), PATH_LENGTH);
+
+                    stmt.setString(1, UUID.randomUUID().toString());
+                    stmt.setTimestamp(2, request.getCreatedAt());
+                    stmt.setString(3, truncate(request.getMethod(), METHOD_LENGTH));
+                    stmt.setString(4, path);
+                    stmt.setInt(5, request.getStatusCode());
+                    stmt.setString(6, truncate(request.getIpAddress(), IP_ADDRESS_LENGTH));
+                    stmt.setString(7, truncate(request.getUserAgent(), USER_AGENT_LENGTH));
+
+                    if (request.getApiTokenId() != null) {
+                        stmt.setString(8, request.getApiTokenId());
+                    } else {
+                        stmt.setNull(8, java.sql.Types.VARCHAR);
+                    }
+                    stmt.addBatch();
+
+                    HourlyKey key = new HourlyKey(
+                            Timestamp.valueOf(request.getCreatedAt().toLocalDateTime().truncatedTo(ChronoUnit.HOURS)),
+                            path,
+                            request.getStatusCode(),
+                            request.getApiTokenId() != null
+                    );
+                    hourly.merge(key, 1L, Long::sum);
+                }
 
-            stmt.setString(1, id);
-            stmt.setString(2, method);
-            stmt.setString(3, path);
-            stmt.setInt(4, statusCode);
-            stmt.setString(5, ipAddress);
-            stmt.setString(6, userAgent);
-
-            if (apiTokenId != null) {
-                stmt.setString(7, apiTokenId);
-            } else {
-                stmt.setNull(7, java.sql.Types.VARCHAR);
+                for (Map.Entry<HourlyKey, Long> entry : hourly.entrySet()) {
+                    HourlyKey key = entry.getKey();
+                    rollupStmt.setTimestamp(1, key.getHour());
+                    rollupStmt.setString(2, key.getPath());
+                    rollupStmt.setInt(3, key.getStatusCode());
+                    rollupStmt.setBoolean(4, key.isAuthenticated());
+                    rollupStmt.setLong(5, entry.getValue());
+                    rollupStmt.addBatch();
+                }
+
+                stmt.executeBatch();
+                rollupStmt.executeBatch();
+                connection.commit();
+                return true;
+            } catch (Exception ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(true);
             }
-            return stmt.executeUpdate() > 0;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             return false;
         }
     }
 
+    private static String truncate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        // Do not leave half of a surrogate pair at the end
+        int end = Character.isHighSurrogate(value.charAt(maxLength - 1)) ? maxLength - 1 : maxLength;
+        return value.substring(0, end);
+    }
+
     public ApiRequestStatsEntity getRequestStats() {
         String sql = """
                     SELECT
-                        (SELECT COUNT(*) FROM apiRequests) AS totalAllTime,
-                        (SELECT COUNT(*) FROM apiRequests WHERE createdAt >= NOW() - INTERVAL 1 DAY) AS total24Hours,
-                        (SELECT COUNT(*) FROM apiRequests WHERE createdAt >= NOW() - INTERVAL 7 DAY) AS total7Days,
-                        (SELECT COUNT(*) FROM apiRequests WHERE createdAt >= NOW() - INTERVAL 30 DAY) AS total30Days
+                        COALESCE(SUM(total), 0) AS totalAllTime,
+                        COALESCE(SUM(CASE WHEN hour >= NOW() - INTERVAL 1 DAY THEN total END), 0) AS total24Hours,
+                        COALESCE(SUM(CASE WHEN hour >= NOW() - INTERVAL 7 DAY THEN total END), 0) AS total7Days,
+                        COALESCE(SUM(CASE WHEN hour >= NOW() - INTERVAL 30 DAY THEN total END), 0) AS total30Days
+                    FROM apiRequestsHourly
                 """;
 
         try (Connection connection = dataSource.getConnection();
@@ -76,12 +153,12 @@ public class LogTable implements ITable {
 
     public List<DailyRequestStatEntity> getDailyStatsForMonth(int year, int month) {
         String sql = """
-                    SELECT DATE(createdAt) AS day,
-                           CASE WHEN apiTokenId IS NULL THEN 'unauthenticated' ELSE 'authenticated' END AS authStatus,
-                           COUNT(*) AS total
-                    FROM apiRequests
-                    WHERE YEAR(createdAt) = ? AND MONTH(createdAt) = ?
-                    GROUP BY DATE(createdAt), authStatus
+                    SELECT DATE(hour) AS day,
+                           CASE WHEN authenticated THEN 'authenticated' ELSE 'unauthenticated' END AS authStatus,
+                           SUM(total) AS total
+                    FROM apiRequestsHourly
+                    WHERE hour >= ? AND hour < ?
+                    GROUP BY DATE(hour), authStatus
                     ORDER BY day ASC
                 """;
 
@@ -90,8 +167,7 @@ public class LogTable implements ITable {
         try (Connection connection = dataSource.getConnection();
              PreparedStatement stmt = connection.prepareStatement(sql)) {
 
-            stmt.setInt(1, year);
-            stmt.setInt(2, month);
+            DateRange.ofMonth(year, month).bind(stmt, 1);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -110,13 +186,13 @@ public class LogTable implements ITable {
 
     public List<EndpointRequestStatEntity> getTopEndpoints(Integer year, Integer month) {
         String baseSql = """
-                    SELECT path, COUNT(*) AS total
-                    FROM apiRequests
+                    SELECT path, SUM(total) AS total
+                    FROM apiRequestsHourly
                 """;
 
         String whereClause = "";
         if (year != null && month != null && year > 0 && month > 0) {
-            whereClause = "WHERE YEAR(createdAt) = ? AND MONTH(createdAt) = ?";
+            whereClause = "WHERE hour >= ? AND hour < ?";
         }
 
         String groupOrderLimit = " GROUP BY path ORDER BY total DESC LIMIT 20";
@@ -128,8 +204,7 @@ public class LogTable implements ITable {
              PreparedStatement stmt = connection.prepareStatement(sql)) {
 
             if (!whereClause.isEmpty()) {
-                stmt.setInt(1, year);
-                stmt.setInt(2, month);
+                DateRange.ofMonth(year, month).bind(stmt, 1);
             }
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -146,4 +221,12 @@ public class LogTable implements ITable {
 
         return stats;
     }
+
+    @Data
+    private static class HourlyKey {
+        private final Timestamp hour;
+        private final String path;
+        private final int statusCode;
+        private final boolean authenticated;
+    }
 }
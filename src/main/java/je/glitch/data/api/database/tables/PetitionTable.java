@@ -4,6 +4,7 @@ import com.zaxxer.hikari.HikariDataSource;
 import io.javalin.http.Context;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.Pagination;
 import je.glitch.data.api.utils.Utils;
 import lombok.RequiredArgsConstructor;
 
@@ -39,17 +40,41 @@ public class PetitionTable implements ITable {
             addFilter(where, params, "p.state = ?", ctx.queryParam("state"));
             addFilter(where, params, "p.creatorName LIKE ?", ctx.queryParam("creator"));
 
-            int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
-            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(30);
+            int page = Pagination.page(ctx);
+            int limit = Pagination.limit(ctx, 30);
             int offset = (page - 1) * limit;
 
-            int totalItems = fetchSingleInt(connection, "SELECT COUNT(*) " + where, params);
-            int totalPages = (int) Math.ceil((double) totalItems / limit);
+            Integer totalItems = Pagination.isCountRequested(ctx)
+                    ? fetchSingleInt(connection, "SELECT COUNT(*) " + where, params)
+                    : null;
 
-            List<Map<String, Object>> baseRows = fetchRows(connection,
-                    "SELECT * " + where + " ORDER BY p.id DESC LIMIT ? OFFSET ?",
-                    params, limit, offset
-            );
+            List<Map<String, Object>> baseRows;
+            Map<String, Object> pagination;
+
+            if (Pagination.isCursorRequested(ctx)) {
+                List<String> after = Pagination.decodeCursor(ctx, 1);
+                if (after != null) {
+                    addFilter(where, params, "p.id < ?", String.valueOf(Pagination.parseCursorId(after.get(0))));
+                }
+
+                baseRows = fetchRows(connection,
+                        "SELECT * " + where + " ORDER BY p.id DESC LIMIT ? OFFSET ?",
+                        params, limit + 1, 0
+                );
+
+                String nextCursor = null;
+                if (baseRows.size() > limit) {
+                    baseRows = baseRows.subList(0, limit);
+                    nextCursor = Pagination.encodeCursor(baseRows.get(limit - 1).get("id"));
+                }
+                pagination = Pagination.cursorPagination(limit, nextCursor, totalItems);
+            } else {
+                baseRows = fetchRows(connection,
+                        "SELECT * " + where + " ORDER BY p.id DESC LIMIT ? OFFSET ?",
+                        params, limit, offset
+                );
+                pagination = Pagination.offsetPagination(page, limit, totalItems);
+            }
 
             List<Object> results = new ArrayList<>();
 
@@ -90,14 +115,11 @@ public class PetitionTable implements ITable {
             }
 
             return Map.of(
-                    "pagination", Map.of(
-                            "page", page,
-                            "limit", limit,
-                            "totalPages", totalPages,
-                            "totalItems", totalItems
-                    ),
+                    "pagination", pagination,
                     "results", results
             );
+        } catch (HttpException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new HttpException(ErrorType.SERVER_ERROR, 500, ex.getMessage());
         }
@@ -1,6 +1,8 @@
 package je.glitch.data.api.database.tables;
 
 import com.zaxxer.hikari.HikariDataSource;
+import je.glitch.data.api.cache.ApiKeyResolver;
+import je.glitch.data.api.models.ApiToken;
 import je.glitch.data.api.models.Carpark;
 import je.glitch.data.api.models.LiveParkingSpace;
 import je.glitch.data.api.models.User;
@@ -15,6 +17,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserTable implements ITable {
     private final HikariDataSource dataSource;
+    private final ApiKeyTable apiKeyTable;
 
     /**
      * Returns a user from the database.
@@ -150,7 +153,7 @@ public class UserTable implements ITable {
     }
 
     /**
-     * Deletes a user from the database by ID.
+     * Deletes a user from the database by ID, along with their API tokens.
      * @param userId the ID of the user to delete
      * @return true if deletion was successful
      */
@@ -159,8 +162,16 @@ public class UserTable implements ITable {
         try (Connection connection = dataSource.getConnection();
              PreparedStatement stmt = connection.prepareStatement(sql)) {
 
+            // The tokens are removed by the cascade, so look them up first to drop them from the resolver
+            List<ApiToken> tokens = apiKeyTable.getTokensForUser(userId);
+
             stmt.setString(1, userId);
-            return stmt.executeUpdate() > 0;
+            boolean deleted = stmt.executeUpdate() > 0;
+            ApiKeyResolver resolver = apiKeyTable.getResolver();
+            if (deleted && resolver != null) {
+                tokens.forEach(token -> resolver.onTokenDeleted(token.getId()));
+            }
+            return deleted;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             return false;
@@ -4,11 +4,14 @@ import com.zaxxer.hikari.HikariDataSource;
 import io.javalin.http.Context;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.Pagination;
 import je.glitch.data.api.utils.Utils;
 import je.glitch.data.api.models.Vehicle;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
 import lombok.RequiredArgsConstructor;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.*;
 
 @RequiredArgsConstructor
@@ -33,24 +36,59 @@ public class VehicleTable implements ITable {
             addDateFilter(query, params, "firstRegisteredInJerseyAt", ctx.queryParam("firstRegisteredInJerseyBefore"), "<=");
 
             // Pagination
-            int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
-            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(30);
+            int page = Pagination.page(ctx);
+            int limit = Pagination.limit(ctx, 30);
             int offset = (page - 1) * limit;
 
-            int totalItems = fetchSingleInt(connection, "SELECT COUNT(*) " + query, params);
-            int totalPages = (int) Math.ceil((double) totalItems / limit);
+            Integer totalItems = Pagination.isCountRequested(ctx)
+                    ? fetchSingleInt(connection, "SELECT COUNT(*) " + query, params)
+                    : null;
 
-            List<Map<String, Object>> vehicles = fetchRows(
-                    connection,
-                    "SELECT * " + query + " ORDER BY firstRegisteredAt DESC LIMIT ? OFFSET ?",
-                    params, limit, offset
-            );
+            List<Map<String, Object>> vehicles;
+            Map<String, Object> pagination;
+
+            if (Pagination.isCursorRequested(ctx)) {
+                // Seek past the last row of the previous page rather than using an offset
+                List<String> after = Pagination.decodeCursor(ctx, 2);
+                List<Object> seekParams = new ArrayList<>(params);
+
+                if (after != null) {
+                    query.append(" AND (firstRegisteredAt, id) < (?, ?)");
+                    seekParams.add(after.get(0));
+                    seekParams.add(Pagination.parseCursorId(after.get(1)));
+                }
+
+                vehicles = fetchRows(
+                        connection,
+                        "SELECT * " + query + " ORDER BY firstRegisteredAt DESC, id DESC LIMIT ? OFFSET ?",
+                        seekParams, limit + 1, 0
+                );
+
+                String nextCursor = null;
+                if (vehicles.size() > limit) {
+                    vehicles = vehicles.subList(0, limit);
+                    Map<String, Object> last = vehicles.get(limit - 1);
+                    nextCursor = Pagination.encodeCursor(last.get("firstRegisteredAt"), last.get("id"));
+                }
+                pagination = Pagination.cursorPagination(limit, nextCursor, totalItems);
+            } else {
+                vehicles = fetchRows(
+                        connection,
+                        "SELECT * " + query + " ORDER BY firstRegisteredAt DESC, id DESC LIMIT ? OFFSET ?",
+                        params, limit, offset
+                );
+                pagination = Pagination.offsetPagination(page, limit, totalItems);
+            }
+
+            vehicles.forEach(row -> row.remove("id"));
 
-            ctx.json(Map.of(
-                    "pagination", Map.of("page", page, "limit", limit, "totalPages", totalPages, "totalItems", totalItems),
+            StreamingJsonMapper.stream(ctx, Map.of(
+                    "pagination", pagination,
                     "results", vehicles
             ));
             return new ArrayList<>();
+        } catch (HttpException ex) {
+            throw ex;
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             throw new HttpException(ErrorType.SERVER_ERROR, 500, ex.getMessage());
@@ -171,6 +209,9 @@ public class VehicleTable implements ITable {
         addDateFilter(query, params, "firstRegisteredInJerseyAt", ctx.queryParam("firstRegisteredInJerseyAfter"), ">=");
         addDateFilter(query, params, "firstRegisteredInJerseyAt", ctx.queryParam("firstRegisteredInJerseyBefore"), "<=");
 
+        int limit = Pagination.limit(ctx, 300);
+        int page = Pagination.page(ctx);
+
         try (Connection connection = dataSource.getConnection()) {
             // Pagination
             String countSql = """
@@ -179,8 +220,6 @@ public class VehicleTable implements ITable {
                 """ + query + " GROUP BY model, make) AS subquery";
 
             int totalItems = fetchSingleInt(connection, countSql, params);
-            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(300);
-            int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
             int offset = (page - 1) * limit;
             int totalPages = (int) Math.ceil((double) totalItems / limit);
 
@@ -215,6 +254,55 @@ public class VehicleTable implements ITable {
         }
     }
 
+    /**
+     * A cheap summary of the table that changes whenever vehicles are imported.
+     *
+     * @return the fingerprint, or null if the table could not be read
+     */
+    public String getFingerprint() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT COUNT(*), MIN(id), MAX(id) FROM vehicles");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3) : null;
+        } catch (SQLException ex) {
+            System.out.println(ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Streams every vehicle in listing order, newest registration first.
+     */
+    public void streamVehicles(VehicleRecordConsumer consumer) throws SQLException {
+        String sql = """
+            SELECT id, firstRegisteredAt, firstRegisteredInJerseyAt, make, model, color, cylinderCapacity, weight, co2Emissions, fuelType
+            FROM vehicles ORDER BY firstRegisteredAt DESC, id DESC
+            """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(
+                            rs.getInt("id"),
+                            rs.getDate("firstRegisteredAt").toLocalDate(),
+                            rs.getDate("firstRegisteredInJerseyAt").toLocalDate(),
+                            rs.getString("make"),
+                            rs.getString("model"),
+                            rs.getString("color"),
+                            (Integer) rs.getObject("cylinderCapacity"),
+                            rs.getString("weight"),
+                            (Integer) rs.getObject("co2Emissions"),
+                            rs.getString("fuelType")
+                    );
+                }
+            }
+        }
+    }
+
     private static void addFilter(StringBuilder query, List<Object> params, String condition, String value) {
         if (value != null) {
             query.append(query.toString().contains("WHERE") ? " AND " : " WHERE ").append(condition);
@@ -267,7 +355,6 @@ public class VehicleTable implements ITable {
 
                     row.put(meta.getColumnName(i), value);
                 }
-                row.remove("id"); // Exclude the "id" field if needed
                 rows.add(row);
             }
             return rows;
@@ -279,4 +366,10 @@ public class VehicleTable implements ITable {
             stmt.setObject(i + 1, params.get(i));
         }
     }
+
+    @FunctionalInterface
+    public interface VehicleRecordConsumer {
+        void accept(int id, LocalDate firstRegisteredAt, LocalDate firstRegisteredInJerseyAt, String make, String model,
+                    String color, Integer cylinderCapacity, String weight, Integer co2Emissions, String fuelType);
+    }
 }
@@ -0,0 +1,18 @@
+package je.glitch.data.api.models.carpark;
+
+import lombok.Data;
+
+/**
+ * Counts of live space readings for one carpark, month and day of the week.
+ */
+@Data
+public class CarparkStatsBucket {
+    private final String name;
+    private final String code;
+    private final int year;
+    private final int month;
+    private final String dayOfWeek;
+    private final long fullCount;
+    private final long availableCount;
+    private final long total;
+}
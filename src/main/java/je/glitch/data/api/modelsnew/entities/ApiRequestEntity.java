@@ -0,0 +1,16 @@
+package je.glitch.data.api.modelsnew.entities;
+
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+@Data
+public class ApiRequestEntity {
+    private final Timestamp createdAt;
+    private final String method;
+    private final String path;
+    private final int statusCode;
+    private final String ipAddress;
+    private final String userAgent;
+    private final String apiTokenId;
+}
@@ -0,0 +1,14 @@
+package je.glitch.data.api.modelsnew.outbound.admin;
+
+import lombok.Data;
+
+@Data
+public class AdminRequestLogMetricsResponse {
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long enqueued;
+    private final long written;
+    private final long dropped;
+    private final long failed;
+    private final long batches;
+}
@@ -0,0 +1,18 @@
+package je.glitch.data.api.modelsnew.outbound.admin;
+
+import lombok.Data;
+
+@Data
+public class AdminUpstreamMetricsResponse {
+    private final String host;
+    private final String circuit;
+    private final int inFlight;
+    private final int maxConcurrent;
+    private final long requests;
+    private final long successes;
+    private final long failures;
+    private final long timeouts;
+    private final long rejected;
+    private final long shortCircuited;
+    private final long averageLatencyMillis;
+}
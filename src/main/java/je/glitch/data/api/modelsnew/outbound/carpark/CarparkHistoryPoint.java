@@ -0,0 +1,12 @@
+package je.glitch.data.api.modelsnew.outbound.carpark;
+
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+@Data
+public class CarparkHistoryPoint {
+    private final Timestamp time;
+    private final double spaces;
+    private final int samples;
+}
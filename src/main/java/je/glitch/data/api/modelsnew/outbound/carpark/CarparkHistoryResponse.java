@@ -0,0 +1,17 @@
+package je.glitch.data.api.modelsnew.outbound.carpark;
+
+import lombok.Data;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Data
+public class CarparkHistoryResponse {
+    private final String code;
+    private final Timestamp from;
+    private final Timestamp to;
+    private final String mode;
+    private final String bucket;
+    private final String agg;
+    private final List<CarparkHistoryPoint> points;
+}
@@ -0,0 +1,16 @@
+package je.glitch.data.api.modelsnew.outbound.vehicle;
+
+import com.google.gson.JsonObject;
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+@Data
+public class PlateLookupJobResponse {
+    private final String id;
+    private final String plate;
+    private final String status;
+    private final Timestamp createdAt;
+    private final Timestamp completedAt;
+    private final JsonObject result;
+}
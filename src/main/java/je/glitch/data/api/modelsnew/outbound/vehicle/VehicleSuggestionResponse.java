@@ -0,0 +1,11 @@
+package je.glitch.data.api.modelsnew.outbound.vehicle;
+
+import lombok.Data;
+
+@Data
+public class VehicleSuggestionResponse {
+    private final String value;
+    private final String make;
+    private final String model;
+    private final int occurrences;
+}
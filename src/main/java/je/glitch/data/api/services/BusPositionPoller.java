@@ -0,0 +1,192 @@
+package je.glitch.data.api.services;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import je.glitch.data.api.Server;
+import je.glitch.data.api.modelsnew.inbound.BusLiveUpdateInbound;
+import je.glitch.data.api.modelsnew.outbound.bus.BusLiveUpdateMinResponse;
+import je.glitch.data.api.modelsnew.outbound.bus.BusLiveUpdateResponse;
+import je.glitch.data.api.utils.GeoGrid;
+import je.glitch.data.api.utils.Utils;
+import je.glitch.data.api.utils.upstream.UpstreamClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Polls the whole fleet's positions from the bus API on a fixed interval and answers
+ * live update queries from a local {@link GeoGrid}, so the upstream load does not
+ * depend on how many clients we have.
+ *
+ * The feed is fetched with a wide secondsAgo window. Ages in the feed are relative to
+ * when it was fetched, so they are moved on by the time since then before filtering.
+ * Polling pauses when nobody has asked for positions for a while. The first request
+ * after that queues a fetch on the poller thread and is answered from whatever is
+ * already held, so request threads never wait on the bus API.
+ */
+@Slf4j
+public class BusPositionPoller {
+    private static final String API_UPDATES_URL = BusService.API_BASE_URL + "/api/Values/v1/";
+    private static final String API_MIN_UPDATES_URL = BusService.API_BASE_URL + "/api/Values/v1/GetMin/";
+    private static final int FEED_WINDOW_SECONDS = 86_400;
+    private static final long POLL_INTERVAL_SECONDS = 5;
+    private static final long MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(POLL_INTERVAL_SECONDS * 3);
+    private static final long IDLE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final UpstreamClient upstream;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "bus-position-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Positions positions;
+    private volatile long lastRequestAt;
+    private volatile long lastAttemptAt;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    public BusPositionPoller(UpstreamClient upstream) {
+        this.upstream = upstream;
+        this.scheduler.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_SECONDS, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public List<BusLiveUpdateResponse> getLiveUpdates(int secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
+        Positions current = current();
+        if (current == null) {
+            return List.of();
+        }
+
+        int elapsed = current.elapsedSeconds();
+        return filter(current.updates, lat, lon, radius)
+                .filter(update -> update.getSecondsAgo() + elapsed <= secondsAgo)
+                .map(r -> new BusLiveUpdateResponse(
+                        r.getDeviceId(), r.getAssetType(), r.getRegistration(), r.getServiceNumber(), r.getServiceName(),
+                        r.getServiceOperator(), r.getOriginalStartTime(), r.getTimeOfUpdate(), r.getDirection(),
+                        r.getLatitude(), r.getLongitude(), r.getBearing(), r.getSecondsAgo() + elapsed
+                ))
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .toList();
+    }
+
+    public List<BusLiveUpdateMinResponse> getMinUpdates(int secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
+        Positions current = current();
+        if (current == null) {
+            return List.of();
+        }
+
+        int elapsed = current.elapsedSeconds();
+        return filter(current.minUpdates, lat, lon, radius)
+                .filter(update -> update.getAge() + elapsed <= secondsAgo)
+                .map(r -> new BusLiveUpdateMinResponse(
+                        r.getBus(), r.getLine(), r.getCategory(), r.getLatitude(), r.getLongitude(), r.getBearing(),
+                        r.getDirection(), r.getTime(), r.getAge() + elapsed
+                ))
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .toList();
+    }
+
+    private static <T> Stream<T> filter(GeoGrid<T> grid, Double lat, Double lon, Integer radius) {
+        if (lat == null || lon == null || radius == null) {
+            return grid.getAll().stream();
+        }
+        return grid.nearby(lat, lon, radius).stream();
+    }
+
+    /**
+     * Returns the latest positions, or null if none have been fetched yet. Stale
+     * positions are still returned, with a fetch queued on the poller thread.
+     */
+    private Positions current() {
+        lastRequestAt = System.currentTimeMillis();
+
+        Positions current = positions;
+        boolean stale = current == null || current.ageMillis() > MAX_AGE_MILLIS;
+        // A failing upstream should not be retried by every request
+        boolean retryDue = System.currentTimeMillis() - lastAttemptAt > TimeUnit.SECONDS.toMillis(POLL_INTERVAL_SECONDS);
+        if (stale && retryDue && refreshQueued.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                try {
+                    poll();
+                } finally {
+                    refreshQueued.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    private void poll() {
+        if (System.currentTimeMillis() - lastRequestAt > IDLE_AFTER_MILLIS) {
+            return;
+        }
+        fetch();
+    }
+
+    private void fetch() {
+        lastAttemptAt = System.currentTimeMillis();
+
+        try {
+            CompletableFuture<HttpResponse<String>> resFuture = upstream.send(API_UPDATES_URL + FEED_WINDOW_SECONDS, "GET", null);
+            CompletableFuture<HttpResponse<String>> minResFuture = upstream.send(API_MIN_UPDATES_URL + FEED_WINDOW_SECONDS, "GET", null);
+            HttpResponse<String> res = UpstreamClient.await(resFuture);
+            HttpResponse<String> minRes = UpstreamClient.await(minResFuture);
+
+            if (res.statusCode() != 200 || minRes.statusCode() != 200) {
+                log.error("Bus API returned bad status: " + res.statusCode() + "/" + minRes.statusCode());
+                return;
+            }
+
+            JsonArray updates = JsonParser.parseString(res.body()).getAsJsonObject().getAsJsonArray("updates");
+            JsonArray minUpdates = JsonParser.parseString(minRes.body()).getAsJsonObject().getAsJsonArray("minimumInfoUpdates");
+
+            List<BusLiveUpdateInbound.Update> inbound = Server.GSON.fromJson(updates, Utils.listOf(BusLiveUpdateInbound.Update.class));
+            List<BusLiveUpdateInbound.MinUpdate> minInbound = Server.GSON.fromJson(minUpdates, Utils.listOf(BusLiveUpdateInbound.MinUpdate.class));
+
+            List<BusLiveUpdateResponse> updateResponses = inbound.stream()
+                    .map(r -> new BusLiveUpdateResponse(
+                            r.getDeviceId(), r.getAssetType(), r.getRegistration(), r.getServiceNumber(), r.getServiceName(),
+                            r.getServiceOperator(), r.getOriginalStartTime(), r.getTimeOfUpdate(), r.getDirection(),
+                            r.getLatitude(), r.getLongitude(), r.getBearing(), r.getSecondsAgo()
+                    ))
+                    .toList();
+            List<BusLiveUpdateMinResponse> minResponses = minInbound.stream()
+                    .map(r -> new BusLiveUpdateMinResponse(
+                            r.getBus(), r.getLine(), r.getCategory(), r.getLatitude(), r.getLongitude(), r.getBearing(), r.getDirection(), r.getTime(), r.getAge()
+                    ))
+                    .toList();
+
+            positions = new Positions(
+                    System.currentTimeMillis(),
+                    new GeoGrid<>(updateResponses, BusLiveUpdateResponse::getLatitude, BusLiveUpdateResponse::getLongitude),
+                    new GeoGrid<>(minResponses, BusLiveUpdateMinResponse::getLatitude, BusLiveUpdateMinResponse::getLongitude)
+            );
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.error("Failed to fetch bus positions: " + ex.getMessage());
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Positions {
+        private final long fetchedAt;
+        private final GeoGrid<BusLiveUpdateResponse> updates;
+        private final GeoGrid<BusLiveUpdateMinResponse> minUpdates;
+
+        long ageMillis() {
+            return System.currentTimeMillis() - fetchedAt;
+        }
+
+        int elapsedSeconds() {
+            return (int) (ageMillis() / 1000);
+        }
+    }
+}
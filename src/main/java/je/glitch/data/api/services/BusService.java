@@ -8,56 +8,52 @@ import com.google.gson.JsonParser;
 import je.glitch.data.api.Server;
 import je.glitch.data.api.database.MySQLConnection;
 import je.glitch.data.api.modelsnew.entities.BusStopEntity;
-import je.glitch.data.api.modelsnew.inbound.BusLiveUpdateInbound;
 import je.glitch.data.api.modelsnew.inbound.BusRouteInbound;
 import je.glitch.data.api.modelsnew.inbound.BusStopLiveInbound;
 import je.glitch.data.api.modelsnew.outbound.bus.*;
+import je.glitch.data.api.utils.CoalescingLoader;
 import je.glitch.data.api.utils.Utils;
-import lombok.RequiredArgsConstructor;
+import je.glitch.data.api.utils.upstream.UpstreamClient;
+import je.glitch.data.api.utils.upstream.UpstreamException;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
-@RequiredArgsConstructor
 public class BusService {
     private final MySQLConnection connection;
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final UpstreamClient upstream;
+    private final BusPositionPoller positionPoller;
 
-    private static final String API_BASE_URL = "http://sojbuslivetimespublic.azurewebsites.net";
+    static final String API_BASE_URL = "http://sojbuslivetimespublic.azurewebsites.net";
     private static final String API_GET_ROUTES_URL = API_BASE_URL + "/api/Values/v1/GetRoutes";
     private static final String API_STOP_URL = API_BASE_URL + "/api/Values/v1/BusStop/";
-    private static final String API_UPDATES_URL = API_BASE_URL + "/api/Values/v1/";
-    private static final String API_MIN_UPDATES_URL = API_BASE_URL + "/api/Values/v1/GetMin/";
 
     private final Cache<String, List<BusStopResponse>> busStopsStaticCache = Caffeine.newBuilder()
             .expireAfterWrite(30, TimeUnit.MINUTES)
             .maximumSize(1)
             .build();
 
-    private final Cache<String, List<BusRouteResponse>> routeCache = Caffeine.newBuilder()
-            .expireAfterWrite(1, TimeUnit.MINUTES)
-            .maximumSize(1)
-            .build();
+    private final CoalescingLoader<String, List<BusRouteResponse>> routeLoader = new CoalescingLoader<>(
+            "bus routes", key -> fetchBusRoutes(), List.of(),
+            Duration.ofMinutes(1), Duration.ofSeconds(10), Duration.ofMillis(750), Duration.ofHours(6)
+    );
 
-    private final Cache<Integer, List<BusStopLiveDepartureResponse>> stopLiveCache = Caffeine.newBuilder()
-            .expireAfterWrite(30, TimeUnit.SECONDS)
-            .maximumSize(50)
-            .build();
+    private final CoalescingLoader<Integer, List<BusStopLiveDepartureResponse>> stopLiveLoader = new CoalescingLoader<>(
+            "bus stop departures", this::fetchStopLiveDepartures, List.of(),
+            Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofMillis(750), Duration.ofMinutes(5)
+    );
 
-    private final Cache<String, List<BusLiveUpdateResponse>> liveUpdatesCache = Caffeine.newBuilder()
-            .expireAfterWrite(10, TimeUnit.SECONDS)
-            .maximumSize(100)
-            .build();
-
-    private final Cache<String, List<BusLiveUpdateMinResponse>> minUpdatesCache = Caffeine.newBuilder()
-            .expireAfterWrite(10, TimeUnit.SECONDS)
-            .maximumSize(100)
-            .build();
+    public BusService(MySQLConnection connection, UpstreamClient upstream) {
+        this.connection = connection;
+        this.upstream = upstream;
+        this.positionPoller = new BusPositionPoller(upstream);
+    }
 
     public BusStopResponse getBusStop(int stopNumber) {
         BusStopEntity entity = connection.getBusTable().getBusStopByStopNumber(String.valueOf(stopNumber));
@@ -88,124 +84,57 @@ public class BusService {
                 .toList());
     }
 
-    public List<BusRouteResponse> getBusRoutes() {
-        try {
-            HttpResponse<String> res = Utils.sendRequest(httpClient, API_GET_ROUTES_URL, "GET", null);
+    public CompletableFuture<CoalescingLoader.Result<List<BusRouteResponse>>> getBusRoutes() {
+        return routeLoader.get("routes");
+    }
 
-            if (res.statusCode() != 200 || res.body() == null || res.body().isBlank()) {
-                log.error("Bus API returned bad status: " + res.statusCode());
-                return new ArrayList<>();
-            }
+    public CompletableFuture<CoalescingLoader.Result<List<BusStopLiveDepartureResponse>>> getStopLiveDepartures(int stopId) {
+        return stopLiveLoader.get(stopId);
+    }
 
-            JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
-            JsonArray results = root.getAsJsonArray("routes");
+    private CompletableFuture<List<BusRouteResponse>> fetchBusRoutes() {
+        return upstream.send(API_GET_ROUTES_URL, "GET", null).thenApply(this::parseBusRoutes);
+    }
 
-            List<BusRouteInbound> inbound = Server.GSON.fromJson(results, Utils.listOf(BusRouteInbound.class));
+    private List<BusRouteResponse> parseBusRoutes(HttpResponse<String> res) {
+        checkResponse(res);
 
-            return inbound.stream()
-                    .map(r -> new BusRouteResponse(r.getNumber(), r.getName(), r.getColor()))
-                    .toList();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return new ArrayList<>();
-        }
-    }
+        JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
+        JsonArray results = root.getAsJsonArray("routes");
 
-    public List<BusStopLiveDepartureResponse> getStopLiveDepartures(int stopId) {
-        return stopLiveCache.get(stopId, key -> {
-            try {
-                HttpResponse<String> res = Utils.sendRequest(httpClient, API_STOP_URL + stopId, "GET", null);
-
-                if (res.statusCode() != 200 || res.body() == null || res.body().isBlank()) {
-                    log.error("Bus API returned bad status: " + res.statusCode());
-                    return new ArrayList<>();
-                }
-
-                JsonArray array = JsonParser.parseString(res.body()).getAsJsonArray();
-                List<BusStopLiveInbound.LiveDeparture> inbound = Server.GSON.fromJson(array, Utils.listOf(BusStopLiveInbound.LiveDeparture.class));
-
-                return inbound.stream()
-                        .map(r -> new BusStopLiveDepartureResponse(r.getDestination(), r.getEta(), r.getServiceNumber(), r.getStopNumber()))
-                        .toList();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                return new ArrayList<>();
-            }
-        });
-    }
+        List<BusRouteInbound> inbound = Server.GSON.fromJson(results, Utils.listOf(BusRouteInbound.class));
 
-    public List<BusLiveUpdateResponse> getLiveUpdates(Integer secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
-        String url = buildUpdatesUrl(API_UPDATES_URL, secondsAgo, lat, lon, radius, limit);
-
-        try {
-            HttpResponse<String> res = Utils.sendRequest(httpClient, url, "GET", null);
-
-            JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
-            JsonArray updates = root.getAsJsonArray("updates");
-
-            List<BusLiveUpdateInbound.Update> inbound = Server.GSON.fromJson(updates, Utils.listOf(BusLiveUpdateInbound.Update.class));
-
-            return inbound.stream()
-                    .map(r -> new BusLiveUpdateResponse(
-                            r.getDeviceId(), r.getAssetType(), r.getRegistration(), r.getServiceNumber(), r.getServiceName(),
-                            r.getServiceOperator(), r.getOriginalStartTime(), r.getTimeOfUpdate(), r.getDirection(),
-                            r.getLatitude(), r.getLongitude(), r.getBearing(), r.getSecondsAgo()
-                    ))
-                    .toList();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return new ArrayList<>();
-        }
+        return inbound.stream()
+                .map(r -> new BusRouteResponse(r.getNumber(), r.getName(), r.getColor()))
+                .toList();
     }
 
-    public List<BusLiveUpdateMinResponse> getMinUpdates(Integer secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
-        String url = buildUpdatesUrl(API_MIN_UPDATES_URL, secondsAgo, lat, lon, radius, limit);
+    private CompletableFuture<List<BusStopLiveDepartureResponse>> fetchStopLiveDepartures(int stopId) {
+        return upstream.send(API_STOP_URL + stopId, "GET", null).thenApply(this::parseStopLiveDepartures);
+    }
 
-        try {
-            HttpResponse<String> res = Utils.sendRequest(httpClient, url, "GET", null);
+    private List<BusStopLiveDepartureResponse> parseStopLiveDepartures(HttpResponse<String> res) {
+        checkResponse(res);
 
-            JsonObject root = JsonParser.parseString(res.body()).getAsJsonObject();
-            JsonArray updates = root.getAsJsonArray("minimumInfoUpdates");
+        JsonArray array = JsonParser.parseString(res.body()).getAsJsonArray();
+        List<BusStopLiveInbound.LiveDeparture> inbound = Server.GSON.fromJson(array, Utils.listOf(BusStopLiveInbound.LiveDeparture.class));
 
-            List<BusLiveUpdateInbound.MinUpdate> inbound =  Server.GSON.fromJson(updates, Utils.listOf(BusLiveUpdateInbound.MinUpdate.class));
+        return inbound.stream()
+                .map(r -> new BusStopLiveDepartureResponse(r.getDestination(), r.getEta(), r.getServiceNumber(), r.getStopNumber()))
+                .toList();
+    }
 
-            return inbound.stream()
-                    .map(r -> new BusLiveUpdateMinResponse(
-                           r.getBus(), r.getLine(), r.getCategory(), r.getLatitude(), r.getLongitude(), r.getBearing(), r.getDirection(), r.getTime(), r.getAge()
-                    ))
-                    .toList();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return new ArrayList<>();
+    private static void checkResponse(HttpResponse<String> res) {
+        if (res.statusCode() != 200 || res.body() == null || res.body().isBlank()) {
+            throw new CompletionException(new UpstreamException("Bus API returned bad status: " + res.statusCode()));
         }
     }
 
-    private String buildUpdatesUrl(String base, Integer secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
-        StringBuilder url = new StringBuilder(base);
+    public List<BusLiveUpdateResponse> getLiveUpdates(Integer secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
+        return positionPoller.getLiveUpdates(secondsAgo, lat, lon, radius, limit);
+    }
 
-        if (secondsAgo != null) {
-            url.append(secondsAgo);
-        } else {
-            return url.toString();
-        }
-        if (lat != null) {
-            url.append("/").append(lat);
-        } else {
-            return url.toString();
-        }
-        if (lon != null) {
-            url.append("/").append(lon);
-        } else {
-            return url.toString();
-        }
-        if (radius != null) {
-            url.append("/").append(radius);
-        } else {
-            return url.toString();
-        }
-        if (limit != null) {
-            url.append("/").append(limit);
-        }
-        return url.toString();
+    public List<BusLiveUpdateMinResponse> getMinUpdates(Integer secondsAgo, Double lat, Double lon, Integer radius, Integer limit) {
+        return positionPoller.getMinUpdates(secondsAgo, lat, lon, radius, limit);
     }
 }
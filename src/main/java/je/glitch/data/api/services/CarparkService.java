@@ -1,34 +1,59 @@
 package je.glitch.data.api.services;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import io.javalin.http.sse.SseClient;
+import je.glitch.data.api.cache.CarparkIndex;
+import je.glitch.data.api.cache.LiveSpacesDates;
+import je.glitch.data.api.cache.OccupancyHistoryStore;
+import je.glitch.data.api.cache.ParkingStatsMaterializer;
 import je.glitch.data.api.cache.RedisCache;
 import je.glitch.data.api.database.MySQLConnection;
+import je.glitch.data.api.database.tables.CarparkTable;
+import je.glitch.data.api.database.tables.DateRange;
 import je.glitch.data.api.models.Carpark;
 
 import je.glitch.data.api.models.LiveParkingSpace;
-import lombok.RequiredArgsConstructor;
+import je.glitch.data.api.utils.OccupancySeries;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-@RequiredArgsConstructor
 public class CarparkService {
     private final MySQLConnection connection;
     private final RedisCache cache;
+    private final CarparkIndex carparkIndex;
+    private final ParkingStatsMaterializer parkingStats;
+    private final LiveSpacesDates liveSpacesDates;
+    private final OccupancyHistoryStore occupancyHistory;
+    private final LiveSpacesBroadcaster liveSpacesBroadcaster;
+
+    public CarparkService(MySQLConnection connection, RedisCache cache) {
+        this.connection = connection;
+        this.cache = cache;
+        this.carparkIndex = new CarparkIndex(connection.getCarparkTable());
+        this.parkingStats = new ParkingStatsMaterializer(connection.getCarparkTable());
+        this.liveSpacesDates = new LiveSpacesDates(connection.getCarparkTable());
+        this.occupancyHistory = new OccupancyHistoryStore(connection.getCarparkTable());
+        this.liveSpacesBroadcaster = new LiveSpacesBroadcaster(cache);
+    }
 
     public List<Carpark> getAllCarparks() {
-        return connection.getCarparkTable().getCarparks();
+        return carparkIndex.getAll();
     }
 
     public Carpark getCarparkByIdOrCode(String idOrCode) {
         try {
             UUID.fromString(idOrCode);
-            return connection.getCarparkTable().getCarparkById(idOrCode);
+            return carparkIndex.getById(idOrCode);
         } catch (IllegalArgumentException ex) {
-            return connection.getCarparkTable().getCarparkByLiveTrackingCode(idOrCode);
+            return carparkIndex.getByLiveTrackingCode(idOrCode);
         }
     }
 
@@ -52,7 +77,7 @@ public class CarparkService {
 
         return spaces.stream()
                 .map(space -> {
-                    Carpark carparkInfo = connection.getCarparkTable().getCarparkByLiveTrackingCode(space.get("code").toString());
+                    Carpark carparkInfo = carparkIndex.getByLiveTrackingCode(space.get("code").toString());
                     Map<String, Object> map = new HashMap<>(space);
                     map.put("carparkInfo", carparkInfo);
                     return map;
@@ -61,23 +86,65 @@ public class CarparkService {
     }
 
     public List<LiveParkingSpace> getLiveSpacesForDate(String date) {
-        return connection.getCarparkTable().getLiveSpacesForDate(date);
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (DateTimeParseException ex) {
+            return new ArrayList<>();
+        }
+
+        if (liveSpacesDates.isKnownEmpty(day)) {
+            return new ArrayList<>();
+        }
+        if (occupancyHistory.isLoaded()) {
+            return occupancyHistory.getDay(day);
+        }
+        return connection.getCarparkTable().getLiveSpacesForDate(day);
     }
 
     public List<String> getLiveSpacesDates() {
-        return connection.getCarparkTable().getLiveSpacesDates();
+        return liveSpacesDates.getDates();
+    }
+
+    public void subscribeToLiveSpaces(SseClient client) {
+        liveSpacesBroadcaster.register(client);
+    }
+
+    /**
+     * Returns the live tracking code as it is stored, since the history store matches
+     * codes exactly while the index and the database ignore case.
+     *
+     * @return the canonical code, or null if the carpark is not tracked
+     */
+    public String resolveLiveTrackingCode(String code) {
+        Carpark carpark = carparkIndex.getByLiveTrackingCode(code);
+        if (carpark != null) {
+            return carpark.getLiveTrackingCode();
+        }
+        return occupancyHistory.hasCarpark(code) ? code : null;
+    }
+
+    /**
+     * Returns the readings for a carpark in [from, to), from memory once the history
+     * store has loaded and from the database before that.
+     */
+    public OccupancySeries getOccupancy(String code, Timestamp from, Timestamp to) throws SQLException {
+        OccupancySeries series = new OccupancySeries();
+
+        if (occupancyHistory.isLoaded()) {
+            occupancyHistory.forEach(code, from.getTime() / 1000, to.getTime() / 1000,
+                    (index, time, spaces, open, full) -> series.add(OccupancyHistoryStore.toEpochSeconds(time), spaces));
+        } else {
+            connection.getCarparkTable().streamCarparkSpaces(code, new DateRange(from, to), series::add);
+        }
+        return series;
     }
 
     public Map<String, Object> getParkingStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("busiestCarparks", connection.getCarparkTable().getBusiestCarparks());
-        stats.put("mostCommonFullDays", connection.getCarparkTable().getMostCommonFullDays());
-        stats.put("availabilityLastYear", connection.getCarparkTable().getAvailabilityLastYear());
-        stats.put("availabilityThisYear", connection.getCarparkTable().getAvailabilityThisYear());
-        return stats;
+        return parkingStats.getStats();
     }
 
-    public JsonArray getAllSpacesData() {
-        return connection.getCarparkTable().getAllSpacesData();
+    public void streamAllSpacesData(Timestamp from, Timestamp to, CarparkTable.SpaceRowConsumer consumer) throws SQLException, IOException {
+        connection.getCarparkTable().streamSpacesData(new DateRange(from, to), consumer);
     }
 }
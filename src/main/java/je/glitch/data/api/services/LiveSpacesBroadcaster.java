@@ -0,0 +1,216 @@
+package je.glitch.data.api.services;
+
+import io.javalin.http.sse.SseClient;
+import je.glitch.data.api.Server;
+import je.glitch.data.api.cache.RedisCache;
+import je.glitch.data.api.models.LiveParkingSpace;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes live carpark spaces to clients over server-sent events.
+ *
+ * The live feed is checked every few seconds. It comes out of the local redis cache,
+ * so it is only read from redis once per fetcher update. When it changes, the changed
+ * carparks are serialized once and fanned out to every client as a "changes" event.
+ * New clients get a "snapshot" event with every carpark first.
+ *
+ * Each client is written to by at most one thread at a time. A client that falls
+ * more than one update behind is sent a fresh snapshot instead of every update it
+ * missed, so a slow client costs no extra memory. Clients that stay blocked on a
+ * write for too long are disconnected.
+ */
+@Slf4j
+public class LiveSpacesBroadcaster {
+    private static final long POLL_INTERVAL_SECONDS = 2;
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 15;
+    private static final long STALLED_CLIENT_MILLIS = 30_000;
+    private static final int MAX_CLIENTS = 1000;
+
+    private final RedisCache cache;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "live-spaces-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "live-spaces-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched by the scheduler thread
+    private List<LiveParkingSpace> lastFeed;
+    private Map<String, Map<String, Object>> lastState = new HashMap<>();
+
+    private volatile Update latest = new Update(0, "[]", "[]");
+
+    public LiveSpacesBroadcaster(RedisCache cache) {
+        this.cache = cache;
+        this.scheduler.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        this.scheduler.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void register(SseClient sseClient) {
+        if (clients.size() >= MAX_CLIENTS) {
+            sseClient.sendEvent("error", "Too many connected clients, try again later");
+            return;
+        }
+
+        Client client = new Client(sseClient);
+        sseClient.keepAlive();
+        sseClient.onClose(() -> clients.remove(client));
+        clients.add(client);
+
+        client.schedule();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    private void poll() {
+        try {
+            List<LiveParkingSpace> feed = cache.getLiveParkingSpaces();
+
+            // The cache hands back the same list until the key changes
+            if (feed == lastFeed) {
+                return;
+            }
+            lastFeed = feed;
+
+            Map<String, Map<String, Object>> state = new LinkedHashMap<>();
+            List<Map<String, Object>> changes = new ArrayList<>();
+
+            for (LiveParkingSpace space : feed) {
+                Map<String, Object> carpark = new LinkedHashMap<>();
+                carpark.put("name", space.getName());
+                carpark.put("code", space.getCode());
+                carpark.put("spaces", space.getSpaces());
+                carpark.put("status", space.getStatus());
+                carpark.put("open", space.isOpen());
+                state.put(space.getCode(), carpark);
+
+                if (!Objects.equals(lastState.get(space.getCode()), carpark)) {
+                    changes.add(carpark);
+                }
+            }
+            lastState = state;
+
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            Update current = latest;
+            latest = new Update(
+                    current.version + 1,
+                    Server.GSON.toJson(changes),
+                    Server.GSON.toJson(state.values())
+            );
+            clients.forEach(Client::schedule);
+        } catch (Exception ex) {
+            log.error("Failed to broadcast live spaces", ex);
+        }
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+
+        for (Client client : clients) {
+            long started = client.sendStartedAt;
+            if (started != 0 && now - started > STALLED_CLIENT_MILLIS) {
+                log.info("Disconnecting stalled live spaces client");
+                clients.remove(client);
+                client.sseClient.close();
+                continue;
+            }
+            client.heartbeatDue = true;
+            client.schedule();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Update {
+        private final long version;
+        private final String changesJson;
+        private final String snapshotJson;
+    }
+
+    private class Client {
+        private final SseClient sseClient;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile long deliveredVersion = Long.MIN_VALUE;
+        private volatile boolean heartbeatDue;
+        private volatile long sendStartedAt;
+
+        Client(SseClient sseClient) {
+            this.sseClient = sseClient;
+        }
+
+        void schedule() {
+            if (hasWork() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private boolean hasWork() {
+            return heartbeatDue || deliveredVersion != latest.version;
+        }
+
+        private void drain() {
+            try {
+                while (!sseClient.terminated()) {
+                    Update update = latest;
+
+                    if (deliveredVersion != update.version) {
+                        sendStartedAt = System.currentTimeMillis();
+                        if (deliveredVersion == update.version - 1) {
+                            sseClient.sendEvent("changes", update.changesJson, String.valueOf(update.version));
+                        } else {
+                            sseClient.sendEvent("snapshot", update.snapshotJson, String.valueOf(update.version));
+                        }
+                        deliveredVersion = update.version;
+                        heartbeatDue = false;
+                    } else if (heartbeatDue) {
+                        sendStartedAt = System.currentTimeMillis();
+                        heartbeatDue = false;
+                        sseClient.sendComment("heartbeat");
+                    } else {
+                        break;
+                    }
+                    sendStartedAt = 0;
+                }
+            } catch (Exception ex) {
+                clients.remove(this);
+                sseClient.close();
+                return;
+            } finally {
+                sendStartedAt = 0;
+                draining.set(false);
+            }
+
+            if (sseClient.terminated()) {
+                clients.remove(this);
+            } else {
+                // Something may have arrived after the last check
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package je.glitch.data.api.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.JsonObject;
+import je.glitch.data.api.cache.PlateLookupCache;
+import je.glitch.data.api.modelsnew.outbound.vehicle.PlateLookupJobResponse;
+import je.glitch.data.api.utils.ratelimit.RateLimitConfig;
+import je.glitch.data.api.utils.ratelimit.RateLimitResult;
+import je.glitch.data.api.utils.ratelimit.TokenBucket;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues plate lookups and works through them with a small pool of workers.
+ *
+ * All workers share one token bucket for the vehicle search site, so however many
+ * lookups arrive at once we never send more than the site is happy with. Lookups
+ * beyond the queue's capacity are refused rather than held. Finished jobs are kept
+ * for a while so clients can poll for them.
+ *
+ * Plates found in the {@link PlateLookupCache} are answered with an already finished
+ * job, and a plate that is already queued or running shares that job rather than
+ * being looked up twice.
+ */
+@Slf4j
+public class PlateLookupQueue {
+    private static final int WORKERS = 4;
+    private static final int QUEUE_CAPACITY = 500;
+    private static final RateLimitConfig HOST_LIMIT = new RateLimitConfig(10, 10, TimeUnit.SECONDS);
+
+    private final PlateLookupClient client;
+    private final PlateLookupCache cache;
+    private final ConcurrentHashMap<String, Job> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Job> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final TokenBucket hostBucket = new TokenBucket();
+    private final Cache<String, Job> jobs = Caffeine.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    public PlateLookupQueue(PlateLookupClient client, PlateLookupCache cache) {
+        this.client = client;
+        this.cache = cache;
+
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS, r -> {
+            Thread thread = new Thread(r, "plate-lookup-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < WORKERS; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * @return the queued job, or null if the queue is full
+     */
+    public Job submit(String plate) {
+        PlateLookupCache.Entry cached = cache.get(plate);
+        if (cached != null) {
+            Job job = new Job(UUID.randomUUID().toString(), plate);
+            job.complete(cached.getResult());
+            jobs.put(job.id, job);
+            return job;
+        }
+
+        Job job = pending.compute(PlateLookupCache.normalize(plate), (key, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            Job created = new Job(UUID.randomUUID().toString(), plate);
+            return queue.offer(created) ? created : null;
+        });
+        if (job != null) {
+            jobs.put(job.id, job);
+        }
+        return job;
+    }
+
+    public Job getJob(String id) {
+        return jobs.getIfPresent(id);
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                job = queue.take();
+                awaitToken();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            job.status = Status.RUNNING;
+            try {
+                JsonObject result = client.lookup(job.plate).get();
+                cache.put(job.plate, result);
+                job.complete(result);
+            } catch (InterruptedException ex) {
+                job.fail();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                log.error("Plate lookup failed for " + job.plate + ": " + ex.getCause().getMessage());
+                job.fail();
+            } finally {
+                pending.remove(PlateLookupCache.normalize(job.plate), job);
+                // Written again so the job is kept for ten minutes after it finishes, not after it was queued
+                jobs.put(job.id, job);
+            }
+        }
+    }
+
+    private void awaitToken() throws InterruptedException {
+        while (true) {
+            RateLimitResult result = hostBucket.tryConsume(System.currentTimeMillis() * 1000, HOST_LIMIT);
+            if (result.isAllowed()) {
+                return;
+            }
+            Thread.sleep(Math.max(1, result.getRetryAfterMillis()));
+        }
+    }
+
+    public enum Status { QUEUED, RUNNING, FOUND, NOT_FOUND, FAILED }
+
+    public static class Job {
+        @Getter
+        private final String id;
+        @Getter
+        private final String plate;
+        private final long createdAt = System.currentTimeMillis();
+        private final CompletableFuture<Job> done = new CompletableFuture<>();
+
+        @Getter
+        private volatile Status status = Status.QUEUED;
+        private volatile JsonObject result;
+        private volatile long completedAt;
+
+        Job(String id, String plate) {
+            this.id = id;
+            this.plate = plate;
+        }
+
+        /**
+         * Completes when the lookup has finished, whether or not it succeeded.
+         */
+        public CompletableFuture<Job> getDone() {
+            return done;
+        }
+
+        public boolean isFinished() {
+            return done.isDone();
+        }
+
+        public JsonObject getResult() {
+            return result;
+        }
+
+        public PlateLookupJobResponse toResponse() {
+            return new PlateLookupJobResponse(
+                    id,
+                    plate,
+                    status.name(),
+                    new Timestamp(createdAt),
+                    completedAt > 0 ? new Timestamp(completedAt) : null,
+                    result
+            );
+        }
+
+        private void complete(JsonObject result) {
+            this.result = result;
+            finish(result != null ? Status.FOUND : Status.NOT_FOUND);
+        }
+
+        private void fail() {
+            finish(Status.FAILED);
+        }
+
+        private void finish(Status status) {
+            this.completedAt = System.currentTimeMillis();
+            this.status = status;
+            done.complete(this);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package je.glitch.data.api.services;
+
+import je.glitch.data.api.database.MySQLConnection;
+import je.glitch.data.api.modelsnew.entities.ApiRequestEntity;
+import je.glitch.data.api.modelsnew.outbound.admin.AdminRequestLogMetricsResponse;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers tracked api requests in a bounded queue and writes them to the
+ * database in batches from a single writer thread. When the queue is full
+ * new events are dropped rather than blocking request threads.
+ */
+@Slf4j
+public class RequestLogService {
+    private static final int QUEUE_CAPACITY = 20_000;
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final MySQLConnection connection;
+    private final BlockingQueue<PendingRequest> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public RequestLogService(MySQLConnection connection) {
+        this.connection = connection;
+        this.writer = new Thread(this::runWriter, "request-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a request to be logged. Never blocks.
+     *
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean track(String method, String path, int statusCode, String ipAddress, String userAgent, String token) {
+        PendingRequest request = new PendingRequest(
+                new Timestamp(System.currentTimeMillis()), method, path, statusCode, ipAddress, userAgent, token
+        );
+
+        if (!running || !queue.offer(request)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        enqueued.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stops accepting events and waits for the writer to flush what is left in the queue.
+     */
+    public void shutdown() {
+        running = false;
+
+        try {
+            writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Request log writer stopped with " + queue.size() + " events still queued");
+        }
+    }
+
+    public AdminRequestLogMetricsResponse getMetrics() {
+        return new AdminRequestLogMetricsResponse(
+                queue.size(),
+                QUEUE_CAPACITY,
+                enqueued.get(),
+                written.get(),
+                dropped.get(),
+                failed.get(),
+                batches.get()
+        );
+    }
+
+    private void runWriter() {
+        List<PendingRequest> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRequest first = running
+                        ? queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                        : queue.poll();
+
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+                continue;
+            }
+
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingRequest> batch) {
+        try {
+            List<ApiRequestEntity> entities = new ArrayList<>(batch.size());
+
+            for (PendingRequest request : batch) {
+                String apiTokenId = connection.getApiKeyResolver().resolve(request.getToken());
+
+                entities.add(new ApiRequestEntity(
+                        request.getCreatedAt(),
+                        request.getMethod(),
+                        request.getPath(),
+                        request.getStatusCode(),
+                        request.getIpAddress(),
+                        request.getUserAgent(),
+                        apiTokenId
+                ));
+            }
+
+            if (connection.getLogTable().trackRequests(entities)) {
+                written.addAndGet(entities.size());
+            } else {
+                failed.addAndGet(entities.size());
+            }
+            batches.incrementAndGet();
+        } catch (Exception ex) {
+            log.error("Failed to write request log batch", ex);
+            failed.addAndGet(batch.size());
+        }
+    }
+
+    @Data
+    private static class PendingRequest {
+        private final Timestamp createdAt;
+        private final String method;
+        private final String path;
+        private final int statusCode;
+        private final String ipAddress;
+        private final String userAgent;
+        private final String token;
+    }
+}
@@ -1,40 +1,226 @@
 package je.glitch.data.api.services;
 
-import com.google.gson.JsonObject;
+import je.glitch.data.api.cache.PlateLookupCache;
+import je.glitch.data.api.cache.RedisCache;
+import je.glitch.data.api.cache.VehicleColumns;
+import je.glitch.data.api.cache.VehicleDataset;
+import je.glitch.data.api.cache.VehicleSuggestions;
 import je.glitch.data.api.database.MySQLConnection;
-import je.glitch.data.api.utils.VehiclePlateHelper;
-import lombok.RequiredArgsConstructor;
+import je.glitch.data.api.modelsnew.outbound.vehicle.VehicleSuggestionResponse;
+import je.glitch.data.api.utils.ErrorType;
+import je.glitch.data.api.utils.HttpException;
+import je.glitch.data.api.utils.Pagination;
+import je.glitch.data.api.utils.json.StreamingJsonMapper;
+import je.glitch.data.api.utils.upstream.UpstreamClient;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 import io.javalin.http.Context;
 
-@RequiredArgsConstructor
 public class VehicleService {
     private final MySQLConnection connection;
+    private final PlateLookupQueue plateLookupQueue;
+    private final VehicleDataset dataset;
+
+    public VehicleService(MySQLConnection connection, UpstreamClient upstream, RedisCache cache) {
+        this.connection = connection;
+        this.plateLookupQueue = new PlateLookupQueue(new PlateLookupClient(upstream), new PlateLookupCache(cache.getPool()));
+        this.dataset = new VehicleDataset(connection.getVehicleTable());
+    }
 
     public void getVehicles(Context ctx) {
-        connection.getVehicleTable().getVehicles(ctx);
+        VehicleColumns columns = dataset.getColumns();
+        if (columns == null) {
+            connection.getVehicleTable().getVehicles(ctx);
+            return;
+        }
+
+        VehicleColumns.Filter filter;
+        try {
+            filter = VehicleColumns.Filter.fromQuery(ctx, true);
+        } catch (IllegalArgumentException ex) {
+            throw new HttpException(ErrorType.SERVER_ERROR, 500, ex.getMessage());
+        }
+
+        int page = Pagination.page(ctx);
+        int limit = Pagination.limit(ctx, 30);
+        int offset = Math.max(0, (page - 1) * limit);
+
+        Integer totalItems = Pagination.isCountRequested(ctx) ? columns.count(filter) : null;
+
+        List<Integer> rows;
+        Map<String, Object> pagination;
+
+        if (Pagination.isCursorRequested(ctx)) {
+            List<String> after = Pagination.decodeCursor(ctx, 2);
+            int from = 0;
+            if (after != null) {
+                try {
+                    from = columns.seekAfter(LocalDate.parse(after.get(0)), Pagination.parseCursorId(after.get(1)));
+                } catch (DateTimeParseException ex) {
+                    throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid cursor");
+                }
+            }
+
+            rows = columns.findRows(filter, from, 0, limit + 1);
+
+            String nextCursor = null;
+            if (rows.size() > limit) {
+                rows = rows.subList(0, limit);
+                int last = rows.get(limit - 1);
+                nextCursor = Pagination.encodeCursor(columns.getRow(last).get("firstRegisteredAt"), columns.getId(last));
+            }
+            pagination = Pagination.cursorPagination(limit, nextCursor, totalItems);
+        } else {
+            rows = columns.findRows(filter, 0, offset, limit);
+            pagination = Pagination.offsetPagination(page, limit, totalItems);
+        }
+
+        List<Map<String, Object>> vehicles = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            vehicles.add(columns.getRow(row));
+        }
+
+        StreamingJsonMapper.stream(ctx, Map.of(
+                "pagination", pagination,
+                "results", vehicles
+        ));
     }
 
     public Map<String, Object> getStats(Context ctx) throws SQLException {
-        return connection.getVehicleTable().getStats(ctx);
+        VehicleColumns columns = dataset.getColumns();
+        if (columns == null) {
+            return connection.getVehicleTable().getStats(ctx);
+        }
+
+        VehicleColumns.Filter filter = VehicleColumns.Filter.fromQuery(ctx, false);
+        Map<String, Object> results = new HashMap<>();
+        results.put("totalVehicles", columns.count(filter));
+        results.put("distinctModels", countDistinct(columns.getModels(), columns.countByModel(filter)));
+        results.put("distinctMakes", countDistinct(columns.getMakes(), columns.countByMake(filter)));
+        results.put("distinctColors", countDistinct(columns.getColors(), columns.countByColor(filter)));
+        return results;
     }
 
     public Map<String, Object> getColors(Context ctx) throws SQLException {
-        return connection.getVehicleTable().getColors(ctx);
+        VehicleColumns columns = dataset.getColumns();
+        if (columns == null) {
+            return connection.getVehicleTable().getColors(ctx);
+        }
+
+        int[] counts = columns.countByColor(VehicleColumns.Filter.fromQuery(ctx, false));
+        Map<String, Object> results = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                String color = columns.getColors().get(code);
+                if (color == null || color.isEmpty()) {
+                    color = "Not Specified";
+                }
+                results.merge(color, counts[code], (a, b) -> (Integer) a + (Integer) b);
+            }
+        }
+        return results;
     }
 
     public Map<String, Object> getMakes(Context ctx) throws SQLException {
-        return connection.getVehicleTable().getMakes(ctx);
+        VehicleColumns columns = dataset.getColumns();
+        if (columns == null) {
+            return connection.getVehicleTable().getMakes(ctx);
+        }
+
+        int[] counts = columns.countByMake(VehicleColumns.Filter.fromQuery(ctx, false));
+        Map<String, Object> results = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                results.put(columns.getMakes().get(code), counts[code]);
+            }
+        }
+        return results;
     }
 
     public Map<String, Object> getModels(Context ctx) throws SQLException {
-        return connection.getVehicleTable().getModels(ctx);
+        VehicleColumns columns = dataset.getColumns();
+        if (columns == null) {
+            return connection.getVehicleTable().getModels(ctx);
+        }
+
+        int[] counts = columns.countByMakeModel(VehicleColumns.Filter.fromQuery(ctx, false));
+        int[] pairs = IntStream.range(0, counts.length)
+                .filter(pair -> counts[pair] > 0)
+                .boxed()
+                .sorted((a, b) -> Integer.compare(counts[b], counts[a]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        int totalItems = pairs.length;
+        int limit = Pagination.limit(ctx, 300);
+        int page = Pagination.page(ctx);
+        int offset = Math.max(0, (page - 1) * limit);
+        int totalPages = (int) Math.ceil((double) totalItems / limit);
+
+        Map<String, Object> occurrences = new HashMap<>();
+        for (int i = offset; i < Math.min(totalItems, offset + limit); i++) {
+            int pair = pairs[i];
+            String model = columns.getPairModel(pair);
+            String key = (model == null || model.isEmpty()) ? "Not Specified" : columns.getPairMake(pair) + " " + model;
+            occurrences.merge(key, (long) counts[pair], (a, b) -> (Long) a + (Long) b);
+        }
+
+        return Map.of(
+                "pagination", Map.of(
+                        "page", page,
+                        "limit", limit,
+                        "totalPages", totalPages,
+                        "totalItems", totalItems
+                ),
+                "results", occurrences
+        );
+    }
+
+    /**
+     * @return the most common makes starting with the prefix, empty until the dataset has loaded
+     */
+    public List<VehicleSuggestionResponse> suggestMakes(String prefix, int limit) {
+        VehicleSuggestions suggestions = dataset.getSuggestions();
+        return suggestions != null ? suggestions.suggestMakes(prefix, limit) : List.of();
+    }
+
+    /**
+     * @return the most common models starting with the prefix, empty until the dataset has loaded
+     */
+    public List<VehicleSuggestionResponse> suggestModels(String prefix, int limit) {
+        VehicleSuggestions suggestions = dataset.getSuggestions();
+        return suggestions != null ? suggestions.suggestModels(prefix, limit) : List.of();
+    }
+
+    /**
+     * Counts the values that occur at least once, ignoring null like COUNT(DISTINCT) does.
+     */
+    private static int countDistinct(VehicleColumns.Dictionary dictionary, int[] counts) {
+        int distinct = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0 && dictionary.get(code) != null) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * @return the queued lookup, or null if too many lookups are already queued
+     */
+    public PlateLookupQueue.Job submitPlateLookup(String plate) {
+        return plateLookupQueue.submit(plate);
     }
 
-    public JsonObject getPlate(String plate) throws Exception {
-        return VehiclePlateHelper.parseVehicleInfo(plate, connection);
+    public PlateLookupQueue.Job getPlateLookup(String id) {
+        return plateLookupQueue.getJob(id);
     }
 }
@@ -0,0 +1,144 @@
+package je.glitch.data.api.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches values from a slow or unreliable upstream.
+ *
+ * <ul>
+ *     <li>Only one load per key is in flight at a time, concurrent callers share it.</li>
+ *     <li>Values are refreshed in the background shortly before they expire, so busy
+ *     keys never expire at all.</li>
+ *     <li>Once a value has expired, callers wait for the reload for at most the latency
+ *     budget. If it fails or is too slow, the expired value is returned marked stale,
+ *     for up to {@code maxStale} after it was loaded.</li>
+ * </ul>
+ *
+ * Loads are asynchronous and nothing here blocks, so the returned future can be
+ * handed straight to {@code ctx.future}.
+ */
+@Slf4j
+public class CoalescingLoader<K, V> {
+    private static final long FIRST_LOAD_TIMEOUT_MILLIS = 10_000;
+
+    private final String name;
+    private final Loader<K, V> loader;
+    private final V fallback;
+    private final long ttlMillis;
+    private final long refreshAheadMillis;
+    private final long latencyBudgetMillis;
+    private final Cache<K, Entry<V>> entries;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param name used in logs
+     * @param loader starts fetching a value, completing exceptionally if the upstream fails
+     * @param fallback returned when a key has never loaded successfully
+     * @param ttl how long a value is fresh for
+     * @param refreshAhead how long before expiry a read triggers a background refresh
+     * @param latencyBudget how long to wait for a reload before serving the stale value
+     * @param maxStale how long after loading a value may still be served stale
+     */
+    public CoalescingLoader(String name, Loader<K, V> loader, V fallback, Duration ttl, Duration refreshAhead,
+                            Duration latencyBudget, Duration maxStale) {
+        this.name = name;
+        this.loader = loader;
+        this.fallback = fallback;
+        this.ttlMillis = ttl.toMillis();
+        this.refreshAheadMillis = refreshAhead.toMillis();
+        this.latencyBudgetMillis = latencyBudget.toMillis();
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(maxStale)
+                .maximumSize(1000)
+                .build();
+    }
+
+    public CompletableFuture<Result<V>> get(K key) {
+        Entry<V> entry = entries.getIfPresent(key);
+        long now = System.currentTimeMillis();
+
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (age < ttlMillis) {
+                if (age >= ttlMillis - refreshAheadMillis) {
+                    load(key);
+                }
+                return CompletableFuture.completedFuture(new Result<>(entry.value, false, age / 1000));
+            }
+        }
+
+        long timeout = entry != null ? latencyBudgetMillis : FIRST_LOAD_TIMEOUT_MILLIS;
+        // A copy, so the timeout does not complete the shared load for everyone else
+        return load(key)
+                .thenApply(value -> new Result<>(value, false, 0))
+                .copy()
+                .completeOnTimeout(null, timeout, TimeUnit.MILLISECONDS)
+                .exceptionally(ex -> null)
+                .thenApply(result -> {
+                    if (result != null) {
+                        return result;
+                    }
+                    if (entry != null) {
+                        return new Result<>(entry.value, true, (System.currentTimeMillis() - entry.loadedAt) / 1000);
+                    }
+                    return new Result<>(fallback, false, 0);
+                });
+    }
+
+    private CompletableFuture<V> load(K key) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletionStage<V> stage;
+        try {
+            stage = loader.load(key);
+        } catch (RuntimeException ex) {
+            stage = CompletableFuture.failedFuture(ex);
+        }
+
+        stage.whenComplete((value, ex) -> {
+            if (ex == null) {
+                entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+                inFlight.remove(key, created);
+                created.complete(value);
+            } else {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                log.error("Failed to load " + name + " for " + key + ": " + cause.getMessage());
+                inFlight.remove(key, created);
+                created.completeExceptionally(cause);
+            }
+        });
+        return created;
+    }
+
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        CompletionStage<V> load(K key);
+    }
+
+    @Data
+    public static class Result<V> {
+        private final V value;
+        private final boolean stale;
+        private final long ageSeconds;
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+    }
+}
@@ -0,0 +1,301 @@
+package je.glitch.data.api.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable compressed bitmap of non-negative ints, laid out like a Roaring bitmap.
+ *
+ * Values are split by their high 16 bits into containers. A container with few values
+ * is a sorted array of the low 16 bits; one with more than {@link #ARRAY_MAX} values is
+ * a plain 65536 bit set. Sparse sets stay small, dense sets are a few words per
+ * thousand values, and AND/OR only touch containers that share a key.
+ */
+public final class CompressedBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+    private static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0]);
+
+    private final char[] keys;
+    private final Container[] containers;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        int total = 0;
+        for (Container container : containers) {
+            total += container.cardinality;
+        }
+        this.cardinality = total;
+    }
+
+    public static CompressedBitmap empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Iterates the values in ascending order, starting from the first value that is at least {@code from}.
+     */
+    public Cursor cursor(int from) {
+        return new Cursor(from);
+    }
+
+    public static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+        List<Character> keys = new ArrayList<>();
+        List<Container> containers = new ArrayList<>();
+
+        int i = 0;
+        int j = 0;
+        while (i < a.keys.length && j < b.keys.length) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality > 0) {
+                    keys.add(a.keys[i]);
+                    containers.add(container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return of(keys, containers);
+    }
+
+    public static CompressedBitmap or(List<CompressedBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return EMPTY;
+        }
+        if (bitmaps.size() == 1) {
+            return bitmaps.get(0);
+        }
+
+        // Accumulate every container into a bit set per key, then compress once
+        TreeMap<Character, long[]> words = new TreeMap<>();
+        for (CompressedBitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.keys.length; i++) {
+                bitmap.containers[i].orInto(words.computeIfAbsent(bitmap.keys[i], k -> new long[WORDS]));
+            }
+        }
+
+        List<Character> keys = new ArrayList<>(words.size());
+        List<Container> containers = new ArrayList<>(words.size());
+        for (Map.Entry<Character, long[]> entry : words.entrySet()) {
+            keys.add(entry.getKey());
+            containers.add(Container.fromWords(entry.getValue()));
+        }
+        return of(keys, containers);
+    }
+
+    private static CompressedBitmap of(List<Character> keys, List<Container> containers) {
+        char[] keyArray = new char[keys.size()];
+        for (int i = 0; i < keyArray.length; i++) {
+            keyArray[i] = keys.get(i);
+        }
+        return new CompressedBitmap(keyArray, containers.toArray(new Container[0]));
+    }
+
+    /**
+     * Either a sorted array of low bits or a full bit set, never both.
+     */
+    private static final class Container {
+        private final char[] values;
+        private final long[] words;
+        private final int cardinality;
+
+        private Container(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX) {
+                return new Container(null, words, cardinality);
+            }
+
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new Container(values, null, cardinality);
+        }
+
+        static Container fromSorted(char[] buffer, int n) {
+            if (n <= ARRAY_MAX) {
+                return new Container(Arrays.copyOf(buffer, n), null, n);
+            }
+            long[] words = new long[WORDS];
+            for (int i = 0; i < n; i++) {
+                words[buffer[i] >>> 6] |= 1L << buffer[i];
+            }
+            return new Container(null, words, n);
+        }
+
+        boolean contains(char value) {
+            if (words != null) {
+                return (words[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        Container and(Container other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] = words[w] & other.words[w];
+                }
+                return fromWords(result);
+            }
+
+            // At least one side is an array, so the result fits in an array
+            Container array = values != null ? this : other;
+            Container probe = array == this ? other : this;
+            char[] result = new char[array.cardinality];
+            int n = 0;
+            for (char value : array.values) {
+                if (probe.contains(value)) {
+                    result[n++] = value;
+                }
+            }
+            return new Container(Arrays.copyOf(result, n), null, n);
+        }
+
+        void orInto(long[] target) {
+            if (words != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    target[w] |= words[w];
+                }
+            } else {
+                for (char value : values) {
+                    target[value >>> 6] |= 1L << value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forward iteration over the values, see {@link #cursor(int)}.
+     */
+    public final class Cursor {
+        private int index;
+        private int position;
+        private long word;
+
+        private Cursor(int from) {
+            char key = (char) (from >>> 16);
+            while (index < keys.length && keys[index] < key) {
+                index++;
+            }
+            if (index < keys.length) {
+                int low = keys[index] == key ? from & 0xFFFF : 0;
+                seek(low);
+            }
+        }
+
+        /**
+         * @return the next value, or -1 when there are no more
+         */
+        public int next() {
+            while (index < keys.length) {
+                Container container = containers[index];
+                int high = keys[index] << 16;
+
+                if (container.values != null) {
+                    if (position < container.values.length) {
+                        return high | container.values[position++];
+                    }
+                } else {
+                    while (word == 0 && position < WORDS - 1) {
+                        word = container.words[++position];
+                    }
+                    if (word != 0) {
+                        int value = (position << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        return high | value;
+                    }
+                }
+
+                index++;
+                if (index < keys.length) {
+                    seek(0);
+                }
+            }
+            return -1;
+        }
+
+        private void seek(int low) {
+            Container container = containers[index];
+            if (container.values != null) {
+                int found = Arrays.binarySearch(container.values, (char) low);
+                position = found >= 0 ? found : -found - 1;
+            } else {
+                position = low >>> 6;
+                word = container.words[position] & (-1L << low);
+            }
+        }
+    }
+
+    /**
+     * Builds a bitmap from values added in strictly ascending order.
+     */
+    public static final class Builder {
+        private final List<Character> keys = new ArrayList<>();
+        private final List<Container> containers = new ArrayList<>();
+        private char[] buffer = new char[16];
+        private int size;
+        private int currentKey = -1;
+
+        public void add(int value) {
+            int key = value >>> 16;
+            if (key != currentKey) {
+                flush();
+                currentKey = key;
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (char) value;
+        }
+
+        public CompressedBitmap build() {
+            flush();
+            return of(keys, containers);
+        }
+
+        private void flush() {
+            if (size > 0) {
+                keys.add((char) currentKey);
+                containers.add(Container.fromSorted(buffer, size));
+                size = 0;
+            }
+        }
+    }
+}
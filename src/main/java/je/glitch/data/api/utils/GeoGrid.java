@@ -0,0 +1,99 @@
+package je.glitch.data.api.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Immutable grid index over points, for "everything within r metres" lookups.
+ *
+ * Points are bucketed into cells of {@link #CELL_DEGREES} on each axis. A radius
+ * query only looks at the cells overlapping the radius' bounding box, then checks
+ * the exact distance of the points in them. When the box covers more cells than
+ * there are points, every point is checked instead.
+ */
+public class GeoGrid<T> {
+    private static final double CELL_DEGREES = 0.01;
+    private static final double EARTH_RADIUS_METRES = 6_371_000;
+    private static final double METRES_PER_DEGREE = Math.PI * EARTH_RADIUS_METRES / 180;
+
+    private final List<T> all;
+    private final Map<Long, List<T>> cells = new HashMap<>();
+    private final ToDoubleFunction<T> latitude;
+    private final ToDoubleFunction<T> longitude;
+
+    public GeoGrid(List<T> items, ToDoubleFunction<T> latitude, ToDoubleFunction<T> longitude) {
+        this.all = List.copyOf(items);
+        this.latitude = latitude;
+        this.longitude = longitude;
+
+        for (T item : all) {
+            long cell = cell(cellIndex(latitude.applyAsDouble(item)), cellIndex(longitude.applyAsDouble(item)));
+            cells.computeIfAbsent(cell, c -> new ArrayList<>()).add(item);
+        }
+    }
+
+    public List<T> getAll() {
+        return all;
+    }
+
+    /**
+     * Returns the points within a radius of a location, nearest first.
+     */
+    public List<T> nearby(double lat, double lon, double radiusMetres) {
+        double latDelta = radiusMetres / METRES_PER_DEGREE;
+        double lonDelta = radiusMetres / (METRES_PER_DEGREE * Math.max(Math.cos(Math.toRadians(lat)), 0.01));
+
+        int minY = cellIndex(lat - latDelta);
+        int maxY = cellIndex(lat + latDelta);
+        int minX = cellIndex(lon - lonDelta);
+        int maxX = cellIndex(lon + lonDelta);
+
+        List<Map.Entry<T, Double>> matches = new ArrayList<>();
+        if ((maxY - minY + 1L) * (maxX - minX + 1L) > all.size()) {
+            addWithin(all, lat, lon, radiusMetres, matches);
+        } else {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    List<T> cell = cells.get(cell(y, x));
+                    if (cell != null) {
+                        addWithin(cell, lat, lon, radiusMetres, matches);
+                    }
+                }
+            }
+        }
+
+        matches.sort(Map.Entry.comparingByValue());
+        return matches.stream().map(Map.Entry::getKey).toList();
+    }
+
+    private void addWithin(List<T> items, double lat, double lon, double radiusMetres, List<Map.Entry<T, Double>> matches) {
+        for (T item : items) {
+            double distance = distanceMetres(lat, lon, latitude.applyAsDouble(item), longitude.applyAsDouble(item));
+            if (distance <= radiusMetres) {
+                matches.add(Map.entry(item, distance));
+            }
+        }
+    }
+
+    /**
+     * Great-circle distance between two points using the haversine formula.
+     */
+    public static double distanceMetres(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METRES * Math.asin(Math.sqrt(a));
+    }
+
+    private static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cell(int y, int x) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+}
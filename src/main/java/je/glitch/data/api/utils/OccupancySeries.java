@@ -0,0 +1,176 @@
+package je.glitch.data.api.utils;
+
+import je.glitch.data.api.modelsnew.outbound.carpark.CarparkHistoryPoint;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the readings for one carpark, in time order, and reduces them to chart
+ * points either by fixed time buckets or by largest-triangle-three-buckets (LTTB)
+ * downsampling, which keeps the visual shape of the series in a fixed number of points.
+ */
+public class OccupancySeries {
+    private long[] times = new long[256];
+    private int[] spaces = new int[256];
+    private int size;
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Bucket {
+        FIVE_MINUTES("5m", 300),
+        HOUR("1h", 3600),
+        DAY("1d", 86400);
+
+        private final String param;
+        private final long seconds;
+
+        public static Bucket fromParam(String value) {
+            if (value == null || value.isEmpty()) {
+                return HOUR;
+            }
+            for (Bucket bucket : values()) {
+                if (bucket.param.equalsIgnoreCase(value)) {
+                    return bucket;
+                }
+            }
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid bucket, expected one of 5m, 1h or 1d");
+        }
+
+        /**
+         * Returns the start of the bucket containing a time. Days follow local midnight.
+         */
+        public long start(long epochSeconds, ZoneId zone) {
+            if (this == DAY) {
+                return Instant.ofEpochSecond(epochSeconds).atZone(zone).toLocalDate().atStartOfDay(zone).toEpochSecond();
+            }
+            return Math.floorDiv(epochSeconds, seconds) * seconds;
+        }
+    }
+
+    public enum Aggregation {
+        MIN, MAX, AVG;
+
+        public static Aggregation fromParam(String value) {
+            if (value == null || value.isEmpty()) {
+                return AVG;
+            }
+            for (Aggregation aggregation : values()) {
+                if (aggregation.name().equalsIgnoreCase(value)) {
+                    return aggregation;
+                }
+            }
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid agg, expected one of min, max or avg");
+        }
+    }
+
+    /**
+     * Adds a reading. Readings must be added oldest first.
+     */
+    public void add(long epochSeconds, int count) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            spaces = Arrays.copyOf(spaces, size * 2);
+        }
+        times[size] = epochSeconds;
+        spaces[size] = count;
+        size++;
+    }
+
+    public List<CarparkHistoryPoint> bucketed(Bucket bucket, Aggregation aggregation, ZoneId zone) {
+        List<CarparkHistoryPoint> points = new ArrayList<>();
+
+        int i = 0;
+        while (i < size) {
+            long start = bucket.start(times[i], zone);
+            long end = bucket == Bucket.DAY
+                    ? bucket.start(start + 36 * 3600, zone) // next local midnight, allowing for DST
+                    : start + bucket.seconds;
+
+            long sum = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int samples = 0;
+
+            for (; i < size && times[i] < end; i++, samples++) {
+                sum += spaces[i];
+                min = Math.min(min, spaces[i]);
+                max = Math.max(max, spaces[i]);
+            }
+
+            double value = switch (aggregation) {
+                case MIN -> min;
+                case MAX -> max;
+                case AVG -> Math.round(100.0 * sum / samples) / 100.0;
+            };
+            points.add(new CarparkHistoryPoint(new Timestamp(start * 1000), value, samples));
+        }
+        return points;
+    }
+
+    /**
+     * Downsamples the raw readings to at most {@code threshold} points using LTTB.
+     * The first and last readings are always kept.
+     */
+    public List<CarparkHistoryPoint> lttb(int threshold) {
+        List<CarparkHistoryPoint> points = new ArrayList<>();
+        if (size <= threshold || threshold < 3) {
+            for (int i = 0; i < size; i++) {
+                points.add(point(i));
+            }
+            return points;
+        }
+
+        // Bucket size, excluding the first and last points
+        double every = (double) (size - 2) / (threshold - 2);
+        int selected = 0;
+        points.add(point(selected));
+
+        for (int b = 0; b < threshold - 2; b++) {
+            // Average of the next bucket, used as the third corner of the triangle
+            int nextStart = (int) Math.floor((b + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((b + 2) * every) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += times[j];
+                avgY += spaces[j];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(b * every) + 1;
+            int end = (int) Math.floor((b + 1) * every) + 1;
+
+            double ax = times[selected];
+            double ay = spaces[selected];
+            double maxArea = -1;
+            int maxIndex = start;
+
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (spaces[j] - ay) - (ax - times[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = j;
+                }
+            }
+
+            points.add(point(maxIndex));
+            selected = maxIndex;
+        }
+
+        points.add(point(size - 1));
+        return points;
+    }
+
+    private CarparkHistoryPoint point(int index) {
+        return new CarparkHistoryPoint(new Timestamp(times[index] * 1000), spaces[index], 1);
+    }
+}
@@ -0,0 +1,131 @@
+package je.glitch.data.api.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import io.javalin.http.Context;
+import je.glitch.data.api.Server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for paginated listings.
+ *
+ * Listings use page/limit offsets by default. Passing a {@code cursor} query
+ * parameter (empty for the first page) switches to keyset pagination, where
+ * the response contains an opaque {@code nextCursor} that seeks past the last
+ * row instead of scanning and discarding everything before it. Passing
+ * {@code count=false} skips the separate total count query in either mode.
+ */
+public class Pagination {
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * Reads the {@code page} query parameter, rejecting pages before the first.
+     */
+    public static int page(Context ctx) {
+        int page = ctx.queryParamAsClass("page", Integer.class).getOrDefault(1);
+        if (page < 1) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "page must be at least 1");
+        }
+        return page;
+    }
+
+    /**
+     * Reads the {@code limit} query parameter. Listings fetch one row past the limit
+     * to find the next cursor, so a limit below 1 is rejected before any query runs.
+     */
+    public static int limit(Context ctx, int defaultLimit) {
+        int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(defaultLimit);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    public static boolean isCursorRequested(Context ctx) {
+        return ctx.queryParam("cursor") != null;
+    }
+
+    public static boolean isCountRequested(Context ctx) {
+        return !"false".equalsIgnoreCase(ctx.queryParam("count"));
+    }
+
+    /**
+     * Decodes the cursor passed in the request.
+     *
+     * @param ctx           the request context
+     * @param expectedParts the number of sort key values the cursor should contain
+     * @return the sort key values of the last row on the previous page, or null for the first page
+     */
+    public static List<String> decodeCursor(Context ctx, int expectedParts) {
+        String cursor = ctx.queryParam("cursor");
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            JsonArray array = Server.GSON.fromJson(json, JsonArray.class);
+
+            if (array == null || array.size() != expectedParts) {
+                throw new IllegalArgumentException();
+            }
+
+            List<String> values = new ArrayList<>();
+            for (JsonElement element : array) {
+                values.add(element.isJsonNull() ? null : element.getAsString());
+            }
+            return values;
+        } catch (Exception ex) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid cursor");
+        }
+    }
+
+    /**
+     * Parses a numeric id taken from a decoded cursor.
+     */
+    public static long parseCursorId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (Exception ex) {
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid cursor");
+        }
+    }
+
+    public static String encodeCursor(Object... values) {
+        JsonArray array = new JsonArray();
+        for (Object value : values) {
+            array.add(value == null ? null : String.valueOf(value));
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Server.GSON.toJson(array).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Map<String, Object> offsetPagination(int page, int limit, Integer totalItems) {
+        Map<String, Object> pagination = new LinkedHashMap<>();
+        pagination.put("page", page);
+        pagination.put("limit", limit);
+
+        if (totalItems != null) {
+            pagination.put("totalPages", (int) Math.ceil((double) totalItems / limit));
+            pagination.put("totalItems", totalItems);
+        }
+        return pagination;
+    }
+
+    public static Map<String, Object> cursorPagination(int limit, String nextCursor, Integer totalItems) {
+        Map<String, Object> pagination = new LinkedHashMap<>();
+        pagination.put("limit", limit);
+        pagination.put("nextCursor", nextCursor);
+
+        if (totalItems != null) {
+            pagination.put("totalItems", totalItems);
+        }
+        return pagination;
+    }
+}
@@ -0,0 +1,123 @@
+package je.glitch.data.api.utils;
+
+import com.google.gson.stream.JsonWriter;
+import je.glitch.data.api.database.tables.CarparkTable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes live parking space rows to an output stream as they are read from the database.
+ * Each row is [createdAt, name, spaces, status, open].
+ */
+public class SpacesExportWriter implements CarparkTable.SpaceRowConsumer {
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Format {
+        JSON("application/json"),
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        public static Format fromParam(String value) {
+            if (value == null || value.isEmpty()) {
+                return JSON;
+            }
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new HttpException(ErrorType.INVALID_REQUEST, 400, "Invalid format, expected one of json, ndjson or csv");
+        }
+    }
+
+    private final Format format;
+    private final Writer writer;
+    private final JsonWriter jsonWriter;
+
+    public SpacesExportWriter(Format format, OutputStream outputStream) {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.jsonWriter = new JsonWriter(writer);
+        this.jsonWriter.setHtmlSafe(false);
+    }
+
+    public void begin() throws IOException {
+        switch (format) {
+            case JSON -> {
+                jsonWriter.beginObject();
+                jsonWriter.name("results");
+                jsonWriter.beginArray();
+            }
+            case CSV -> writer.write("createdAt,name,spaces,status,open\n");
+            default -> { }
+        }
+    }
+
+    @Override
+    public void accept(String createdAt, String name, int spaces, String status, boolean open) throws IOException {
+        switch (format) {
+            case JSON -> writeJsonRow(createdAt, name, spaces, status, open);
+            case NDJSON -> {
+                // A fresh writer per line, JsonWriter only allows one top level value
+                JsonWriter line = new JsonWriter(writer);
+                line.setHtmlSafe(false);
+                writeJsonRow(line, createdAt, name, spaces, status, open);
+                writer.write('\n');
+            }
+            case CSV -> {
+                writer.write(csv(createdAt));
+                writer.write(',');
+                writer.write(csv(name));
+                writer.write(',');
+                writer.write(Integer.toString(spaces));
+                writer.write(',');
+                writer.write(csv(status));
+                writer.write(',');
+                writer.write(Boolean.toString(open));
+                writer.write('\n');
+            }
+        }
+    }
+
+    public void end() throws IOException {
+        if (format == Format.JSON) {
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        }
+        writer.flush();
+    }
+
+    private void writeJsonRow(String createdAt, String name, int spaces, String status, boolean open) throws IOException {
+        writeJsonRow(jsonWriter, createdAt, name, spaces, status, open);
+    }
+
+    private static void writeJsonRow(JsonWriter json, String createdAt, String name, int spaces, String status, boolean open) throws IOException {
+        json.beginArray();
+        json.value(createdAt);
+        json.value(name);
+        json.value(spaces);
+        json.value(status);
+        json.value(open);
+        json.endArray();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
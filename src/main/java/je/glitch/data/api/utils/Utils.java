@@ -58,32 +58,6 @@ public class Utils {
         return new QueryDateResult(dateSql, params);
     }
 
-    public static HttpResponse<String> sendRequest(HttpClient client, String url, String method, String body) throws IOException, InterruptedException {
-        return sendRequest(client, url, method, body, null);
-    }
-
-    public static HttpResponse<String> sendRequest(HttpClient client, String url, String method, String body, String cookies) throws IOException, InterruptedException {
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.7;application/json")
-                .header("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/131.0.0.0 Safari/537.36");
-
-        if (cookies != null) {
-            requestBuilder.header("Cookie", cookies);
-        }
-
-        if (method.equalsIgnoreCase("POST") && body != null) {
-            requestBuilder.header("Content-Type", "application/x-www-form-urlencoded")
-                    .POST(HttpRequest.BodyPublishers.ofString(body));
-        } else {
-            requestBuilder.GET();
-        }
-
-        log.info("Outgoing request: " + method + " " + url);
-
-        return client.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
-    }
-
     public static String getUptimeString() {
         long uptimeMillis = RUNTIME_BEAN.getUptime();
         long seconds = uptimeMillis / 1000;
@@ -158,22 +132,7 @@ public class Utils {
     }
 
     public static boolean isAuthenticatedPublic(Context ctx, MySQLConnection connection) {
-        String tokenHeader = ctx.header("x-api-key");
-        String tokenQuery = ctx.queryParam("auth");
-
-        String apiTokenId = null;
-        String token = null;
-
-        if (tokenHeader != null && !tokenHeader.isEmpty()) {
-            token = tokenHeader;
-        } else if (tokenQuery != null && !tokenQuery.isEmpty()) {
-            token = tokenQuery;
-        }
-        if (token != null) {
-            String foundId = connection.getApiKeyTable().getIdFromKey(token);
-            apiTokenId = (foundId != null && !foundId.isEmpty()) ? foundId : null;
-        }
-        return apiTokenId != null;
+        return connection.getApiKeyResolver().resolve(ctx) != null;
     }
 
     public static <T> java.lang.reflect.Type listOf(Class<T> clazz) {
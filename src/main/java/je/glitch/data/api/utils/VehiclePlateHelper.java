@@ -1,24 +1,12 @@
 package je.glitch.data.api.utils;
 
 import com.google.gson.JsonObject;
-import je.glitch.data.api.database.MySQLConnection;
 import je.glitch.data.api.models.enums.VehicleFuelType;
 import lombok.Data;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.io.IOException;
-import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -27,8 +15,13 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class VehiclePlateHelper {
-    private static final String GOV_URL = "https://vehicle-search.gov.je";
-    private static final String SEARCH_URL = GOV_URL + "/search";
+    private static final Pattern DETAIL_ROW_PATTERN = Pattern.compile("<\\w+[^>]*class=\"[^\"]*\\bdetail-row\\b[^\"]*\"[^>]*>");
+    private static final Pattern ROW_END_PATTERN = Pattern.compile("</tr\\s*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CELL_PATTERN = Pattern.compile("<td\\b[^>]*>(.*?)</td>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern CSRF_INPUT_PATTERN = Pattern.compile("<input[^>]*name=\"_csrf\"[^>]*>");
+    private static final Pattern VALUE_ATTRIBUTE_PATTERN = Pattern.compile("value=\"([^\"]*)\"");
+    private static final Pattern TAG_PATTERN = Pattern.compile("<[^>]*>");
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("[\\s\\u00a0]+");
 
     private static final Map<String, VehicleFuelType> FUEL_TYPE_MAP = Map.of(
             "Petrol", VehicleFuelType.PETROL,
@@ -50,29 +43,16 @@ public class VehiclePlateHelper {
     /**
      * Parse the vehicle information from the html.
      *
-     * @param plate The plate for search for
+     * @param html The search results page
      * @return The vehicle info
      */
-    public static JsonObject parseVehicleInfo(String plate, MySQLConnection connection) throws Exception {
-        Document document = Jsoup.parse(fetchVehicleInfo(plate));
-        List<Element> rows = document.getElementsByClass("detail-row");
+    public static JsonObject parseVehicleInfo(String html) {
+        List<VehicleData> vehicleDataList = extractDetailRows(html);
 
-        if (rows.isEmpty()) {
+        if (vehicleDataList.isEmpty()) {
             return null;
         }
 
-        List<VehicleData> vehicleDataList = new ArrayList<>();
-
-        for (Element row : rows) {
-            List<Element> cells = row.getElementsByTag("td");
-
-            if (cells.size() >= 2) {
-                String key = cells.get(0).text();
-                String value = cells.get(1).text();
-                vehicleDataList.add(new VehicleData(key, value));
-            }
-        }
-
         Map<String, String> temp = vehicleDataList.stream()
                 .collect(Collectors.toMap(d -> d.getKey().toLowerCase(), VehicleData::getValue, (a,b)->b));
 
@@ -113,45 +93,75 @@ public class VehiclePlateHelper {
     }
 
     /**
-     * Fetch vehicle information from the Government vehicle search page.
-     * Called from {@link #parseVehicleInfo(String, MySQLConnection)}
+     * Find the CSRF token in the search form without parsing the whole page.
      *
-     * @param plate The plate to search for
-     * @return The html content of the page
+     * @param html The search form page
+     * @return The token, or null if there is no token
      */
-    private static String fetchVehicleInfo(String plate) throws IOException, InterruptedException, NoSuchAlgorithmException, KeyManagementException {
-        // Ignore SSL validation (TODO BAD: REMOVE THIS)
-        TrustManager[] trustAllCertificates = new TrustManager[]{
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() { return null; }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                }
-        };
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, trustAllCertificates, new java.security.SecureRandom());
+    public static String extractCsrfToken(String html) {
+        Matcher matcher = CSRF_INPUT_PATTERN.matcher(html);
+        if (matcher.find()) {
+            Matcher value = VALUE_ATTRIBUTE_PATTERN.matcher(matcher.group());
+            if (value.find()) {
+                return Parser.unescapeEntities(value.group(1), true);
+            }
+        }
 
+        // Attributes in an order we do not expect, let jsoup deal with it
+        Element csrfToken = Jsoup.parse(html).selectFirst("input[name=_csrf]");
+        return csrfToken != null ? csrfToken.val() : null;
+    }
 
-        HttpClient client = HttpClient.newBuilder()
-                .sslContext(sslContext)
-                .build();
+    /**
+     * Pull the key and value cells out of each {@code detail-row} without building a DOM.
+     * Only the rows are looked at, the rest of the page is skipped over.
+     *
+     * @param html The search results page
+     * @return The rows, empty if the plate was not found
+     */
+    static List<VehicleData> extractDetailRows(String html) {
+        List<VehicleData> rows = new ArrayList<>();
+        Matcher rowMatcher = DETAIL_ROW_PATTERN.matcher(html);
 
-        HttpResponse<String> getResponse = Utils.sendRequest(client, GOV_URL, "GET", null);
-        String formHtml = getResponse.body();
-        String cookies = getResponse.headers().allValues("set-cookie").stream()
-                .map(cookie -> cookie.split(";")[0])
-                .collect(Collectors.joining("; "));
+        List<Integer> bounds = new ArrayList<>();
+        while (rowMatcher.find()) {
+            bounds.add(rowMatcher.end());
+        }
 
-        // Extract CSRF token
-        Element csrfToken = Jsoup.parse(formHtml).selectFirst("input[name=_csrf]");
-        if (csrfToken == null) throw new IllegalStateException("CSRF token not found!");
+        Matcher endMatcher = ROW_END_PATTERN.matcher(html);
+        for (int i = 0; i < bounds.size(); i++) {
+            // A row's cells are the first two before it closes or the next row starts
+            int end = i + 1 < bounds.size() ? bounds.get(i + 1) : html.length();
+            if (endMatcher.region(bounds.get(i), end).find()) {
+                end = endMatcher.start();
+            }
+            Matcher cellMatcher = CELL_PATTERN.matcher(html).region(bounds.get(i), end);
+            String key = cellMatcher.find() ? cellText(cellMatcher.group(1)) : null;
+            String value = cellMatcher.find() ? cellText(cellMatcher.group(1)) : null;
+            if (key != null && value != null) {
+                rows.add(new VehicleData(key, value));
+            }
+        }
 
-        String formData = String.format("_csrf=%s&plate=%s",
-                URLEncoder.encode(csrfToken.val(), StandardCharsets.UTF_8),
-                URLEncoder.encode(plate, StandardCharsets.UTF_8));
+        if (rows.isEmpty() && html.contains("detail-row")) {
+            // Markup we do not recognise, fall back to the full parse
+            for (Element row : Jsoup.parse(html).getElementsByClass("detail-row")) {
+                List<Element> cells = row.getElementsByTag("td");
+                if (cells.size() >= 2) {
+                    rows.add(new VehicleData(cells.get(0).text(), cells.get(1).text()));
+                }
+            }
+        }
+        return rows;
+    }
 
-        HttpResponse<String> postResponse = Utils.sendRequest(client, SEARCH_URL, "POST", formData, cookies);
-        return postResponse.body();
+    /**
+     * Same as jsoup's text(): tags dropped, entities decoded and whitespace collapsed.
+     */
+    private static String cellText(String innerHtml) {
+        String text = TAG_PATTERN.matcher(innerHtml).replaceAll(" ");
+        text = Parser.unescapeEntities(text, false);
+        return WHITESPACE_PATTERN.matcher(text).replaceAll(" ").trim();
     }
 
     @Data
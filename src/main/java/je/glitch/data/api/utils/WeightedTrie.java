@@ -0,0 +1,209 @@
+package je.glitch.data.api.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * A radix tree of weighted values for prefix completion, matched ignoring case.
+ *
+ * Chains of single-child nodes are collapsed into one edge, and every node knows the
+ * highest weight beneath it. {@link #top} walks down to the prefix and then expands
+ * the best looking node first, so it stops as soon as it has {@code k} values without
+ * visiting the rest of the subtree.
+ *
+ * Several keys may lead to the same value, each value is returned at most once.
+ */
+public class WeightedTrie<T> {
+    private final Node<T> root = new Node<>("");
+    private boolean frozen;
+
+    public void insert(String key, T value, long weight) {
+        if (frozen) {
+            throw new IllegalStateException("Trie has already been built");
+        }
+
+        Node<T> node = root;
+        String rest = key.toLowerCase(Locale.ROOT);
+
+        while (!rest.isEmpty()) {
+            Node<T> child = node.child(rest.charAt(0));
+            if (child == null) {
+                child = new Node<>(rest);
+                node.addChild(child);
+                node = child;
+                break;
+            }
+
+            int common = commonPrefix(child.label, rest);
+            if (common < child.label.length()) {
+                // Split the edge where the keys diverge
+                Node<T> split = new Node<>(child.label.substring(0, common));
+                node.replaceChild(child, split);
+                child.label = child.label.substring(common);
+                split.addChild(child);
+                child = split;
+            }
+            node = child;
+            rest = rest.substring(common);
+        }
+
+        node.entries.add(new Entry<>(value, weight));
+    }
+
+    /**
+     * Sorts the entries and works out the subtree weights. Must be called once, after
+     * the last insert and before the first lookup.
+     */
+    public WeightedTrie<T> build() {
+        root.freeze();
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * @return up to {@code k} values whose key starts with the prefix, heaviest first
+     */
+    public List<T> top(String prefix, int k) {
+        Node<T> node = find(prefix.toLowerCase(Locale.ROOT));
+        if (node == null || k <= 0) {
+            return List.of();
+        }
+
+        Set<T> results = new LinkedHashSet<>();
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>((a, b) -> Long.compare(b.weight, a.weight));
+        queue.add(new Candidate<>(node, null, node.maxWeight));
+
+        while (!queue.isEmpty() && results.size() < k) {
+            Candidate<T> candidate = queue.poll();
+            if (candidate.entry != null) {
+                results.add(candidate.entry.value);
+                continue;
+            }
+
+            for (Entry<T> entry : candidate.node.entries) {
+                queue.add(new Candidate<>(null, entry, entry.weight));
+            }
+            for (Node<T> child : candidate.node.children) {
+                queue.add(new Candidate<>(child, null, child.maxWeight));
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * The node at or just below the end of the prefix.
+     */
+    private Node<T> find(String prefix) {
+        Node<T> node = root;
+        String rest = prefix;
+
+        while (!rest.isEmpty()) {
+            Node<T> child = node.child(rest.charAt(0));
+            if (child == null) {
+                return null;
+            }
+
+            int common = commonPrefix(child.label, rest);
+            if (common == rest.length()) {
+                // The prefix ends part way along this edge
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            rest = rest.substring(common);
+        }
+        return node;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node<T> {
+        private String label;
+        private char[] firsts = new char[0];
+        @SuppressWarnings("unchecked")
+        private Node<T>[] children = new Node[0];
+        private final List<Entry<T>> entries = new ArrayList<>(1);
+        private long maxWeight;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node<T> child(char first) {
+            int index = Arrays.binarySearch(firsts, first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void addChild(Node<T> child) {
+            char first = child.label.charAt(0);
+            int index = -Arrays.binarySearch(firsts, first) - 1;
+
+            char[] newFirsts = new char[firsts.length + 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            newFirsts[index] = first;
+            System.arraycopy(firsts, index, newFirsts, index + 1, firsts.length - index);
+
+            Node<T>[] newChildren = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            newChildren[index] = child;
+
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        void replaceChild(Node<T> existing, Node<T> replacement) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == existing) {
+                    children[i] = replacement;
+                    return;
+                }
+            }
+        }
+
+        long freeze() {
+            entries.sort((a, b) -> Long.compare(b.weight, a.weight));
+            long max = entries.isEmpty() ? Long.MIN_VALUE : entries.get(0).weight;
+            for (Node<T> child : children) {
+                max = Math.max(max, child.freeze());
+            }
+            maxWeight = max;
+            return max;
+        }
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long weight;
+
+        Entry(T value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static class Candidate<T> {
+        private final Node<T> node;
+        private final Entry<T> entry;
+        private final long weight;
+
+        Candidate(Node<T> node, Entry<T> entry, long weight) {
+            this.node = node;
+            this.entry = entry;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package je.glitch.data.api.utils.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.json.JsonMapper;
+import je.glitch.data.api.Server;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Gson backed {@link JsonMapper} which writes compact json.
+ *
+ * A request can ask for pretty printing with {@code ?pretty=true}. The flag is kept on
+ * the request itself, since {@code ctx.future} callbacks run on other threads. Bodies
+ * written with {@link #stream} are indented as they are written, bodies set through
+ * {@code ctx.json} are indented in {@link #endRequest}.
+ */
+public class StreamingJsonMapper implements JsonMapper {
+    private static final String PRETTY_ATTRIBUTE = "prettyJson";
+
+    public static void beginRequest(Context ctx) {
+        ctx.attribute(PRETTY_ATTRIBUTE, "true".equalsIgnoreCase(ctx.queryParam("pretty")));
+    }
+
+    /**
+     * Indents a json body built with {@code ctx.json} when pretty printing was asked for.
+     * Streamed bodies have already been sent and are left alone.
+     */
+    public static void endRequest(Context ctx) {
+        String contentType = ctx.res().getContentType();
+        if (!isPretty(ctx) || contentType == null || !contentType.startsWith(ContentType.JSON)) {
+            return;
+        }
+
+        String body = ctx.result();
+        if (body != null && !body.isEmpty()) {
+            ctx.result(Server.PRETTY_GSON.toJson(JsonParser.parseString(body)));
+        }
+    }
+
+    /**
+     * Serializes an object straight into the response output stream, without
+     * building the whole document as a string first. Use this for large payloads.
+     *
+     * @param ctx the request context
+     * @param obj the object to write
+     */
+    public static void stream(Context ctx, Object obj) {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        Gson gson = isPretty(ctx) ? Server.PRETTY_GSON : Server.GSON;
+
+        try {
+            JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8)));
+            gson.toJson(obj, obj.getClass(), writer);
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @NotNull
+    @Override
+    public String toJsonString(@NotNull Object obj, @NotNull Type type) {
+        return Server.GSON.toJson(obj, type);
+    }
+
+    @Override
+    public void writeToOutputStream(@NotNull Stream<?> stream, @NotNull OutputStream outputStream) {
+        Gson gson = Server.GSON;
+
+        try {
+            JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+            writer.beginArray();
+            stream.forEach(element -> gson.toJson(element, element.getClass(), writer));
+            writer.endArray();
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @NotNull
+    @Override
+    public <T> T fromJsonString(@NotNull String json, @NotNull Type targetType) {
+        return Server.GSON.fromJson(json, targetType);
+    }
+
+    private static boolean isPretty(Context ctx) {
+        return Boolean.TRUE.equals(ctx.attribute(PRETTY_ATTRIBUTE));
+    }
+}
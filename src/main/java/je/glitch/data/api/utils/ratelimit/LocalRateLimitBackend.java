@@ -0,0 +1,32 @@
+package je.glitch.data.api.utils.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Keeps buckets in this JVM. Limits are only enforced per node.
+ *
+ * Buckets are kept in a bounded cache and evicted once they have been idle for
+ * {@code idleExpiry}. As long as that is at least the longest reset period using
+ * this backend, a bucket is only evicted once it would have refilled anyway.
+ */
+public class LocalRateLimitBackend implements RateLimitBackend {
+    private static final long MAX_TRACKED_KEYS = 100_000;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public LocalRateLimitBackend(Duration idleExpiry) {
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(idleExpiry)
+                .maximumSize(MAX_TRACKED_KEYS)
+                .build();
+    }
+
+    @Override
+    public RateLimitResult tryConsume(String key, RateLimitConfig config) {
+        long nowMicros = System.currentTimeMillis() * 1000;
+        return buckets.get(key, k -> new TokenBucket()).tryConsume(nowMicros, config);
+    }
+}
@@ -0,0 +1,16 @@
+package je.glitch.data.api.utils.ratelimit;
+
+/**
+ * Storage for rate limit buckets.
+ */
+public interface RateLimitBackend {
+
+    /**
+     * Attempts to take a token from the bucket for a key.
+     *
+     * @param key the client key, already including the client type
+     * @param config the limit to apply
+     * @return the outcome of the attempt
+     */
+    RateLimitResult tryConsume(String key, RateLimitConfig config);
+}
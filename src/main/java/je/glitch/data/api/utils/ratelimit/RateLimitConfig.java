@@ -13,4 +13,18 @@ public class RateLimitConfig {
         this.maxRequests = maxRequests;
         this.resetPeriodMillis = unit.toMillis(resetPeriod);
     }
-}
\ No newline at end of file
+
+    /**
+     * The time it takes for one request to be refilled.
+     */
+    public long getIntervalMicros() {
+        return Math.max(1, resetPeriodMillis * 1000 / maxRequests);
+    }
+
+    /**
+     * The time it takes for an empty bucket to refill completely.
+     */
+    public long getCapacityMicros() {
+        return getIntervalMicros() * maxRequests;
+    }
+}
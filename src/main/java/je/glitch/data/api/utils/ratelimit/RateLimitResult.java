@@ -0,0 +1,31 @@
+package je.glitch.data.api.utils.ratelimit;
+
+import lombok.Data;
+
+@Data
+public class RateLimitResult {
+    private final boolean allowed;
+    private final int remaining;
+    /** When the bucket will be completely full again, in epoch millis */
+    private final long resetAtMillis;
+    private final long retryAfterMillis;
+
+    /**
+     * Builds a result from the bucket's theoretical arrival time after the attempt.
+     *
+     * @param allowed whether a token was taken
+     * @param tatMicros the arrival time stored in the bucket
+     * @param nowMicros the time the attempt was made
+     */
+    public static RateLimitResult of(boolean allowed, long tatMicros, long nowMicros, RateLimitConfig config) {
+        long interval = config.getIntervalMicros();
+        long capacity = config.getCapacityMicros();
+
+        if (allowed) {
+            int remaining = (int) ((capacity - (tatMicros - nowMicros)) / interval);
+            return new RateLimitResult(true, remaining, tatMicros / 1000, 0);
+        }
+        long retryAfterMicros = Math.max(tatMicros, nowMicros) + interval - capacity - nowMicros;
+        return new RateLimitResult(false, 0, tatMicros / 1000, retryAfterMicros / 1000);
+    }
+}
@@ -1,62 +1,37 @@
 package je.glitch.data.api.utils.ratelimit;
 
 import io.javalin.http.Context;
-import io.javalin.http.HttpResponseException;
-import io.javalin.http.HttpStatus;
 import je.glitch.data.api.Server;
 import je.glitch.data.api.database.MySQLConnection;
 import je.glitch.data.api.utils.ErrorType;
 import je.glitch.data.api.utils.HttpException;
-import je.glitch.data.api.utils.Utils;
 
-import java.time.Instant;
+import java.time.Duration;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Based off the Javalin rate limiter.
+ *
+ * Each client key gets a token bucket, stored by a {@link RateLimitBackend}.
  */
 public class RateLimiter {
-
-    private static class Counter {
-        private int count;
-        private long resetAt;
-
-        public Counter(long resetAt) {
-            this.count = 0;
-            this.resetAt = resetAt;
-        }
-
-        public synchronized int incrementAndGet(long now, long resetPeriod) {
-            if (now >= resetAt) {
-                count = 1;
-                resetAt = now + resetPeriod;
-            } else {
-                count++;
-            }
-            return count;
-        }
-
-        public synchronized int getCount() {
-            return count;
-        }
-
-        public synchronized long getResetAt() {
-            return resetAt;
-        }
-    }
-
-    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final RateLimitBackend backend;
     private final Map<RateLimitType, RateLimitConfig> configs;
     private final Function<Context, String> keyResolver;
 
     public RateLimiter(Map<RateLimitType, RateLimitConfig> configs) {
-        this(configs, RateLimiter::defaultKeyResolver);
+        this(configs, new LocalRateLimitBackend(Duration.ofMillis(longestPeriod(configs))));
+    }
+
+    public RateLimiter(Map<RateLimitType, RateLimitConfig> configs, RateLimitBackend backend) {
+        this(configs, backend, RateLimiter::defaultKeyResolver);
     }
 
-    public RateLimiter(Map<RateLimitType, RateLimitConfig> configs, Function<Context, String> keyResolver) {
+    public RateLimiter(Map<RateLimitType, RateLimitConfig> configs, RateLimitBackend backend, Function<Context, String> keyResolver) {
         this.configs = configs;
+        this.backend = backend;
         this.keyResolver = keyResolver;
     }
 
@@ -65,21 +40,26 @@ public class RateLimiter {
         RateLimitConfig config = configs.get(type);
 
         String key = type + ":" + keyResolver.apply(ctx); // e.g. type + IP + path
-        long now = Instant.now().toEpochMilli();
-
-        Counter counter = counters.computeIfAbsent(key, k -> new Counter(now + config.getResetPeriodMillis()));
-        int currentCount = counter.incrementAndGet(now, config.getResetPeriodMillis());
+        RateLimitResult result = backend.tryConsume(key, config);
 
         // Set RateLimit headers
         ctx.header("X-RateLimit-Limit", String.valueOf(config.getMaxRequests()));
-        ctx.header("X-RateLimit-Remaining", String.valueOf(Math.max(config.getMaxRequests() - currentCount, 0)));
-        ctx.header("X-RateLimit-Reset", String.valueOf(counter.getResetAt() / 1000));
+        ctx.header("X-RateLimit-Remaining", String.valueOf(result.getRemaining()));
+        ctx.header("X-RateLimit-Reset", String.valueOf(result.getResetAtMillis() / 1000));
 
-        if (currentCount > config.getMaxRequests()) {
-            throw new HttpException(ErrorType.RATE_LIMITED, 429, "Rate limit exceeded. Try again in " + ((counter.getResetAt() - now) / 1000) + " seconds.");
+        if (!result.isAllowed()) {
+            long retryAfterSeconds = (long) Math.ceil(result.getRetryAfterMillis() / 1000.0);
+            throw new HttpException(ErrorType.RATE_LIMITED, 429, "Rate limit exceeded. Try again in " + retryAfterSeconds + " seconds.");
         }
     }
 
+    private static long longestPeriod(Map<RateLimitType, RateLimitConfig> configs) {
+        return configs.values().stream()
+                .mapToLong(RateLimitConfig::getResetPeriodMillis)
+                .max()
+                .orElse(TimeUnit.HOURS.toMillis(1));
+    }
+
     public static String defaultKeyResolver(Context ctx) {
         String ip = ctx.header("X-Forwarded-For") != null
                 ? ctx.header("X-Forwarded-For").split(",")[0].trim()
@@ -87,11 +67,12 @@ public class RateLimiter {
         return ip + ":" + ctx.method() + ":" + ctx.path();
     }
 
+    /**
+     * Works out which limits apply to a request.
+     */
     public static RateLimitType determineClientType(Context ctx, MySQLConnection connection) {
-        if (Utils.isAuthenticatedPublic(ctx, connection)) {
-            return RateLimitType.AUTHENTICATED;
-        }
+        String foundId = connection.getApiKeyResolver().resolve(ctx);
         // TODO: Check database for if the caller is a partner
-        return RateLimitType.DEFAULT;
+        return foundId != null ? RateLimitType.AUTHENTICATED : RateLimitType.DEFAULT;
     }
 }
@@ -0,0 +1,106 @@
+package je.glitch.data.api.utils.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares buckets between api nodes through redis, so limits hold across the whole
+ * deployment. The same algorithm as {@link TokenBucket} runs in a lua script, which
+ * reads and updates the bucket in one atomic round trip using the redis clock.
+ *
+ * If redis errors, or is repeatedly slower than {@link #SLOW_THRESHOLD_MILLIS}, the
+ * backend falls back to local limiting for {@link #BYPASS_MILLIS} before trying again.
+ */
+@Slf4j
+public class RedisRateLimitBackend implements RateLimitBackend {
+    private static final String KEY_PREFIX = "ratelimit:";
+    private static final long SLOW_THRESHOLD_MILLIS = 50;
+    private static final int SLOW_CALLS_BEFORE_BYPASS = 3;
+    private static final long BYPASS_MILLIS = 30_000;
+
+    // Returns {allowed, tat, now}, times are in microseconds
+    private static final String SCRIPT = """
+            if redis.replicate_commands then redis.replicate_commands() end
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            local interval = tonumber(ARGV[1])
+            local capacity = tonumber(ARGV[2])
+            local tat = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local nextTat = math.max(tat, now) + interval
+            if nextTat - now > capacity then
+                return {0, tat, now}
+            end
+            redis.call('SET', KEYS[1], string.format('%d', nextTat), 'PX', math.ceil(capacity / 1000))
+            return {1, nextTat, now}
+            """;
+
+    private final JedisPool pool;
+    private final RateLimitBackend fallback;
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    private volatile String scriptSha;
+    private volatile long bypassUntil;
+
+    public RedisRateLimitBackend(JedisPool pool, RateLimitBackend fallback) {
+        this.pool = pool;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public RateLimitResult tryConsume(String key, RateLimitConfig config) {
+        if (System.currentTimeMillis() < bypassUntil) {
+            return fallback.tryConsume(key, config);
+        }
+
+        long start = System.nanoTime();
+
+        try (Jedis jedis = pool.getResource()) {
+            List<String> args = List.of(
+                    String.valueOf(config.getIntervalMicros()),
+                    String.valueOf(config.getCapacityMicros())
+            );
+
+            @SuppressWarnings("unchecked")
+            List<Long> reply = (List<Long>) eval(jedis, KEY_PREFIX + key, args);
+
+            recordLatency((System.nanoTime() - start) / 1_000_000);
+            return RateLimitResult.of(reply.get(0) == 1L, reply.get(1), reply.get(2), config);
+        } catch (Exception ex) {
+            log.warn("Redis rate limiting failed, using local limits for " + BYPASS_MILLIS + "ms: " + ex.getMessage());
+            bypassUntil = System.currentTimeMillis() + BYPASS_MILLIS;
+            return fallback.tryConsume(key, config);
+        }
+    }
+
+    private Object eval(Jedis jedis, String key, List<String> args) {
+        String sha = scriptSha;
+        if (sha == null) {
+            sha = scriptSha = jedis.scriptLoad(SCRIPT);
+        }
+
+        try {
+            return jedis.evalsha(sha, List.of(key), args);
+        } catch (JedisNoScriptException ex) {
+            // Redis was restarted or flushed its script cache
+            scriptSha = jedis.scriptLoad(SCRIPT);
+            return jedis.evalsha(scriptSha, List.of(key), args);
+        }
+    }
+
+    private void recordLatency(long elapsedMillis) {
+        if (elapsedMillis <= SLOW_THRESHOLD_MILLIS) {
+            slowCalls.set(0);
+            return;
+        }
+        if (slowCalls.incrementAndGet() >= SLOW_CALLS_BEFORE_BYPASS) {
+            log.warn("Redis rate limiting is slow (" + elapsedMillis + "ms), using local limits for " + BYPASS_MILLIS + "ms");
+            slowCalls.set(0);
+            bypassUntil = System.currentTimeMillis() + BYPASS_MILLIS;
+        }
+    }
+}
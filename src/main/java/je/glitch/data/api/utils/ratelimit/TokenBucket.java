@@ -0,0 +1,41 @@
+package je.glitch.data.api.utils.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ *
+ * Rather than storing a token count and a refill time, the bucket stores a single
+ * "theoretical arrival time" (the generic cell rate algorithm). Each request pushes
+ * it forward by one emission interval, and the request is allowed as long as it
+ * stays within one full period of now. This is equivalent to a bucket of
+ * {@code maxRequests} tokens refilling continuously over the period, and fits in
+ * one {@link AtomicLong} so it can be updated with a CAS loop.
+ */
+public class TokenBucket {
+    private final AtomicLong theoreticalArrivalMicros = new AtomicLong();
+
+    /**
+     * Attempts to take a token from the bucket.
+     *
+     * @param nowMicros the current time in microseconds since the epoch
+     * @param config the limit to apply
+     * @return the outcome, including the values for the rate limit headers
+     */
+    public RateLimitResult tryConsume(long nowMicros, RateLimitConfig config) {
+        long intervalMicros = config.getIntervalMicros();
+        long capacityMicros = config.getCapacityMicros();
+
+        while (true) {
+            long previous = theoreticalArrivalMicros.get();
+            long next = Math.max(previous, nowMicros) + intervalMicros;
+
+            if (next - nowMicros > capacityMicros) {
+                return RateLimitResult.of(false, previous, nowMicros, config);
+            }
+            if (theoreticalArrivalMicros.compareAndSet(previous, next)) {
+                return RateLimitResult.of(true, next, nowMicros, config);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package je.glitch.data.api.utils.upstream;
+
+import je.glitch.data.api.modelsnew.outbound.admin.AdminUpstreamMetricsResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends requests to third party services without blocking the calling thread.
+ *
+ * Every host gets a request timeout, a cap on concurrent requests and a
+ * {@link CircuitBreaker}. Requests over the cap or to a host whose breaker is open
+ * fail straight away with an {@link UpstreamException} instead of queueing. Server
+ * errors, timeouts and connection failures all count towards the breaker.
+ */
+@Slf4j
+public class UpstreamClient {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final HostConfig DEFAULT_CONFIG = new HostConfig(Duration.ofSeconds(10), 16);
+    private static final Map<String, HostConfig> HOST_CONFIGS = Map.of(
+            "sojbuslivetimespublic.azurewebsites.net", new HostConfig(Duration.ofSeconds(5), 8),
+            "vehicle-search.gov.je", new HostConfig(Duration.ofSeconds(10), 4)
+    );
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_MILLIS = 30_000;
+
+    private final HttpClient defaultClient = newClientBuilder().build();
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * A client builder with our connect timeout, for callers that need their own client.
+     */
+    public static HttpClient.Builder newClientBuilder() {
+        return HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT);
+    }
+
+    public CompletableFuture<HttpResponse<String>> send(String url, String method, String body) {
+        return send(defaultClient, url, method, body, null);
+    }
+
+    public CompletableFuture<HttpResponse<String>> send(HttpClient client, String url, String method, String body, String cookies) {
+        URI uri = URI.create(url);
+        Host host = hosts.computeIfAbsent(uri.getHost(), h -> new Host(h, HOST_CONFIGS.getOrDefault(h, DEFAULT_CONFIG)));
+
+        // The permit is taken first so a rejected request never uses up a half open trial
+        if (!host.permits.tryAcquire()) {
+            host.rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(new UpstreamException("Too many requests in flight to " + host.name));
+        }
+        if (!host.breaker.tryAcquire()) {
+            host.permits.release();
+            host.shortCircuited.incrementAndGet();
+            return CompletableFuture.failedFuture(new UpstreamException(host.name + " is unavailable"));
+        }
+
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(host.config.requestTimeout)
+                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.7;application/json")
+                .header("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/131.0.0.0 Safari/537.36");
+
+        if (cookies != null) {
+            requestBuilder.header("Cookie", cookies);
+        }
+
+        if (method.equalsIgnoreCase("POST") && body != null) {
+            requestBuilder.header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+        } else {
+            requestBuilder.GET();
+        }
+
+        log.info("Outgoing request: " + method + " " + url);
+
+        host.requests.incrementAndGet();
+        long start = System.nanoTime();
+
+        return client.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.ofString())
+                .handle((response, ex) -> {
+                    host.permits.release();
+                    host.totalLatencyMillis.addAndGet((System.nanoTime() - start) / 1_000_000);
+
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        if (cause instanceof HttpTimeoutException) {
+                            host.timeouts.incrementAndGet();
+                        }
+                        host.failures.incrementAndGet();
+                        host.breaker.onFailure();
+                        throw new CompletionException(new UpstreamException("Request to " + host.name + " failed: " + cause.getMessage(), cause));
+                    }
+
+                    if (response.statusCode() >= 500) {
+                        host.failures.incrementAndGet();
+                        host.breaker.onFailure();
+                    } else {
+                        host.successes.incrementAndGet();
+                        host.breaker.onSuccess();
+                    }
+                    return response;
+                });
+    }
+
+    /**
+     * Waits for a request to finish. Only for background threads, never request threads.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws UpstreamException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UpstreamException upstream) {
+                throw upstream;
+            }
+            throw new UpstreamException(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    public List<AdminUpstreamMetricsResponse> getMetrics() {
+        return hosts.values().stream()
+                .map(host -> {
+                    long requests = host.requests.get();
+                    return new AdminUpstreamMetricsResponse(
+                            host.name,
+                            host.breaker.getState().name(),
+                            host.config.maxConcurrent - host.permits.availablePermits(),
+                            host.config.maxConcurrent,
+                            requests,
+                            host.successes.get(),
+                            host.failures.get(),
+                            host.timeouts.get(),
+                            host.rejected.get(),
+                            host.shortCircuited.get(),
+                            requests > 0 ? host.totalLatencyMillis.get() / requests : 0
+                    );
+                })
+                .toList();
+    }
+
+    @RequiredArgsConstructor
+    private static class HostConfig {
+        private final Duration requestTimeout;
+        private final int maxConcurrent;
+    }
+
+    private static class Host {
+        private final String name;
+        private final HostConfig config;
+        private final Semaphore permits;
+        private final CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS);
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong shortCircuited = new AtomicLong();
+        private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+        Host(String name, HostConfig config) {
+            this.name = name;
+            this.config = config;
+            this.permits = new Semaphore(config.maxConcurrent);
+        }
+    }
+}
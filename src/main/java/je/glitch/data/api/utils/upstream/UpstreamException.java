@@ -0,0 +1,16 @@
+package je.glitch.data.api.utils.upstream;
+
+import java.io.IOException;
+
+/**
+ * An upstream request that was not sent, or did not get a usable response.
+ */
+public class UpstreamException extends IOException {
+    public UpstreamException(String message) {
+        super(message);
+    }
+
+    public UpstreamException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -49,6 +49,9 @@ CREATE TABLE `liveParkingSpaces` (
     PRIMARY KEY (`id`)
 );
 
+ALTER TABLE `liveParkingSpaces` ADD INDEX `liveParkingSpaces_createdAt_index` (`createdAt`);
+ALTER TABLE `liveParkingSpaces` ADD INDEX `liveParkingSpaces_code_createdAt_index` (`code`, `createdAt`);
+
 CREATE TABLE `vehicles` (
     `id` int auto_increment NOT NULL,
     `firstRegisteredAt` date NOT NULL,
@@ -230,6 +233,8 @@ CREATE TABLE `apiTokens` (
     PRIMARY KEY (`id`)
 );
 
+ALTER TABLE `apiTokens` ADD UNIQUE KEY `unique_apiToken_token` (`token`);
+
 CREATE TABLE `apiRequests` (
     `id` varchar(40) NOT NULL,
     `createdAt` timestamp DEFAULT current_timestamp NOT NULL,
@@ -243,6 +248,23 @@ CREATE TABLE `apiRequests` (
     PRIMARY KEY (`id`)
 );
 
+/* Hourly request counts, maintained by the api alongside apiRequests and used by the admin stats */
+CREATE TABLE `apiRequestsHourly` (
+    `hour` timestamp NOT NULL,
+    `path` varchar(200) NOT NULL,
+    `statusCode` int NOT NULL,
+    `authenticated` boolean NOT NULL,
+    `total` bigint NOT NULL,
+    PRIMARY KEY (`hour`, `path`, `statusCode`, `authenticated`)
+);
+
+/* Backfill the rollup from existing request history (run once when adding the table) */
+INSERT INTO `apiRequestsHourly` (`hour`, `path`, `statusCode`, `authenticated`, `total`)
+SELECT DATE_FORMAT(`createdAt`, '%Y-%m-%d %H:00:00'), `path`, `statusCode`, `apiTokenId` IS NOT NULL, COUNT(*)
+FROM `apiRequests`
+GROUP BY 1, 2, 3, 4
+ON DUPLICATE KEY UPDATE `total` = VALUES(`total`);
+
 CREATE TABLE `petitions` (
     `id` bigint NOT NULL,
     `createdAt` datetime DEFAULT current_timestamp NOT NULL,